@@ -0,0 +1,206 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.artifact.repository.MavenArtifactRepository;
+import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojoExecutionException;
+import org.apache.maven.plugin.LegacySupport;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.repository.internal.MavenRepositorySystemSession;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.sonatype.aether.ConfigurationProperties;
+import org.sonatype.aether.RepositorySystem;
+import org.sonatype.aether.impl.Deployer;
+import org.sonatype.aether.repository.LocalRepository;
+
+import com.googlecode.mavenadf.Benchmarks;
+import com.googlecode.mavenadf.Metrics;
+import com.googlecode.mavenadf.SyntheticHome;
+
+/**
+ * Runs {@link DeployADFLibrariesMojo#execute()} end to end: a synthetic
+ * JDeveloper home is deployed with the Maven deployer and HTTP wagon to a
+ * {@link StandInRepository}, and the artifacts per second, bytes per second
+ * and retries are reported.
+ * <p>
+ * Options are given as key=value arguments. Besides the options below, every
+ * parameter of the mojo can be set by its name, e.g. deployThreads=8.
+ * <ul>
+ * <li>jars: the number of jars in the synthetic home (500)</li>
+ * <li>latency: milliseconds added to every request (20)</li>
+ * <li>bandwidth: upload cap in KB/s, 0 for none (0)</li>
+ * <li>errorRate: fraction of requests answered with a 503 (0)</li>
+ * <li>timeoutRate: fraction of requests that are not answered (0)</li>
+ * <li>requestTimeout: read timeout of the deployer in milliseconds (5000)</li>
+ * <li>seed: seed of the home and of the injected faults (1)</li>
+ * <li>keep: keep the home and the work folder (false)</li>
+ * </ul>
+ */
+public class DeployLoadHarness {
+
+	private static final String[][] DEFAULTS = { { "jars", "500" }, { "latency", "20" }, { "bandwidth", "0" }, { "errorRate", "0" },
+			{ "timeoutRate", "0" }, { "requestTimeout", "5000" }, { "seed", "1" }, { "keep", "false" } };
+
+	private static final String[][] MOJO_DEFAULTS = { { "adfVersion", "11.1.1.7.0" }, { "useClasspathManifest", "true" }, { "packagingType", "pom" },
+			{ "repositoryId", "stand-in" }, { "repositoryLayout", "default" }, { "groupIdPrefix", "com.oracle.jdeveloper" },
+			{ "retryFailedDeploymentCount", "3" }, { "retryBackoff", "1000" }, { "retryMaxBackoff", "60000" }, { "circuitBreakerThreshold", "5" },
+			{ "scanThreads", "0" }, { "maxOpenFiles", "64" }, { "deployThreads", "4" }, { "deployBatchSize", "1" }, { "dryRunThroughput", "10240" },
+			{ "pomDigests", "false" }, { "pipeline", "true" } };
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new LinkedHashMap<String, String>();
+		Map<String, String> parameters = new LinkedHashMap<String, String>();
+		for (String[] option : DEFAULTS) {
+			options.put(option[0], option[1]);
+		}
+		for (String[] parameter : MOJO_DEFAULTS) {
+			parameters.put(parameter[0], parameter[1]);
+		}
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				System.err.println("Usage: DeployLoadHarness [option=value]...");
+				System.exit(1);
+			}
+			String name = arg.substring(0, separator);
+			(options.containsKey(name) ? options : parameters).put(name, arg.substring(separator + 1));
+		}
+
+		long seed = Long.parseLong(options.get("seed"));
+		File folder = Benchmarks.createTempFolder("load");
+		StandInRepository repository = new StandInRepository(seed);
+		repository.setLatencyMillis(Long.parseLong(options.get("latency")));
+		repository.setBytesPerSecond(Long.parseLong(options.get("bandwidth")) * 1024);
+		repository.setErrorRate(Double.parseDouble(options.get("errorRate")));
+		repository.setTimeoutRate(Double.parseDouble(options.get("timeoutRate")));
+		int requestTimeout = Integer.parseInt(options.get("requestTimeout"));
+		repository.setStallMillis(requestTimeout * 2L);
+		DefaultPlexusContainer container = null;
+		try {
+			File jdevHome = new SyntheticHome(new File(folder, "Middleware"), Integer.parseInt(options.get("jars")), 20, seed).create();
+			parameters.put("url", repository.start());
+			container = new DefaultPlexusContainer();
+			DeployADFLibrariesMojo mojo = createMojo(container, new File(folder, "target"), jdevHome, requestTimeout, parameters);
+
+			String outcome = "succeeded";
+			try {
+				mojo.execute();
+			} catch (AbstractMojoExecutionException e) {
+				outcome = "failed: " + e.getMessage();
+			}
+			report(options, parameters, outcome, (Metrics) ReflectionUtils.getValueIncludingSuperclasses("metrics", mojo), repository);
+		} finally {
+			if (container != null) {
+				container.dispose();
+			}
+			repository.stop();
+			if (Boolean.parseBoolean(options.get("keep"))) {
+				System.out.println("Kept " + folder);
+			} else {
+				SyntheticHome.delete(folder);
+			}
+		}
+	}
+
+	private static DeployADFLibrariesMojo createMojo(DefaultPlexusContainer container, File buildDirectory, File jdevHome, int requestTimeout,
+			Map<String, String> parameters) throws Exception {
+		RepositorySystem system = container.lookup(RepositorySystem.class);
+		MavenRepositorySystemSession session = new MavenRepositorySystemSession();
+		session.setLocalRepositoryManager(system.newLocalRepositoryManager(new LocalRepository(new File(buildDirectory, "local-repository"))));
+		session.setConfigProperty(ConfigurationProperties.REQUEST_TIMEOUT, Integer.valueOf(requestTimeout));
+		LegacySupport legacySupport = container.lookup(LegacySupport.class);
+		legacySupport.setSession(new MavenSession(container, session, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult()));
+
+		MavenProject project = new MavenProject();
+		project.getBuild().setDirectory(buildDirectory.getAbsolutePath());
+
+		DeployADFLibrariesMojo mojo = new DeployADFLibrariesMojo();
+		set(mojo, "project", project);
+		set(mojo, "jdevHome", jdevHome);
+		set(mojo, "deployer", container.lookup(Deployer.class));
+		set(mojo, "legacySupport", legacySupport);
+		set(mojo, "repositorySystem", Proxy.newProxyInstance(DeployLoadHarness.class.getClassLoader(),
+				new Class<?>[] { org.apache.maven.repository.RepositorySystem.class }, new ArtifactFactory()));
+		set(mojo, "repositoryLayouts", container.lookupMap(ArtifactRepositoryLayout.class));
+		for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+			Field field = ReflectionUtils.getFieldByNameIncludingSuperclasses(parameter.getKey(), DeployADFLibrariesMojo.class);
+			if (field == null) {
+				throw new IllegalArgumentException("Unknown option: " + parameter.getKey());
+			}
+			set(mojo, parameter.getKey(), convert(field.getType(), parameter.getValue()));
+		}
+		return mojo;
+	}
+
+	private static Object convert(Class<?> type, String value) {
+		if (type == int.class) {
+			return Integer.valueOf(value);
+		} else if (type == long.class) {
+			return Long.valueOf(value);
+		} else if (type == boolean.class) {
+			return Boolean.valueOf(value);
+		} else if (type == File.class) {
+			return new File(value);
+		}
+		return value;
+	}
+
+	private static void set(Object object, String name, Object value) throws IllegalAccessException {
+		ReflectionUtils.setVariableValueInObject(object, name, value);
+	}
+
+	private static void report(Map<String, String> options, Map<String, String> parameters, String outcome, Metrics metrics, StandInRepository repository) {
+		if (metrics == null) {
+			System.out.println("Deployment:  " + outcome);
+			return;
+		}
+		Metrics.Timer deployed = metrics.getTimer("deploy");
+		Metrics.Timer failed = metrics.getTimer("deploy-failed");
+		double seconds = metrics.getTimer("deployment").getTotalNanos() / 1e9;
+		System.out.println();
+		System.out.println("Options:     " + options + " " + parameters);
+		System.out.println("Deployment:  " + outcome);
+		System.out.println(String.format("Artifacts:   %d in %.2f s, %.1f artifacts/s", deployed.getItems(), seconds, seconds > 0 ? deployed.getItems() / seconds : 0));
+		System.out.println(String.format("Timeline:    first upload done after %.2f s, scan %.2f s, run %.2f s", metrics.getTimer("first-deploy").getTotalNanos() / 1e9,
+				metrics.getTimer("scan").getTotalNanos() / 1e9, metrics.getTimer("run").getTotalNanos() / 1e9));
+		System.out.println(String.format("Bytes:       %d KB, %.1f KB/s", deployed.getBytes() / 1024, seconds > 0 ? deployed.getBytes() / 1024 / seconds : 0));
+		System.out.println(String.format("Requests:    %d deployed, %d failed attempts (retries), latency p50 %.1f ms, p99 %.1f ms", deployed.getCount(),
+				failed.getCount(), deployed.getPercentileNanos(50) / 1e6, deployed.getPercentileNanos(99) / 1e6));
+		System.out.println(String.format("Repository:  %d HTTP requests, %d uploads, %d KB received, %d injected 503s, %d injected timeouts",
+				repository.getRequests(), repository.getUploads(), repository.getBytesReceived() / 1024, repository.getErrors(), repository.getTimeouts()));
+	}
+
+	/**
+	 * The two methods of Maven's repository system used by the mojo.
+	 */
+	private static final class ArtifactFactory implements InvocationHandler {
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if ("createArtifact".equals(method.getName()) && args.length == 4) {
+				String type = (String) args[3];
+				return new DefaultArtifact((String) args[0], (String) args[1], (String) args[2], null, type, null, new DefaultArtifactHandler(type));
+			}
+			if ("createArtifactRepository".equals(method.getName())) {
+				return new MavenArtifactRepository((String) args[0], (String) args[1], (ArtifactRepositoryLayout) args[2],
+						(ArtifactRepositoryPolicy) args[3], (ArtifactRepositoryPolicy) args[4]);
+			}
+			throw new UnsupportedOperationException(method.getName());
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.mavenadf.Benchmarks;
+import com.googlecode.mavenadf.SyntheticHome;
+
+/**
+ * Rendering the POM of a jar: the template of {@link JarPomGenerator},
+ * including the hash and the lookup of the file, against a
+ * {@link MavenXpp3Writer} per POM as the plugin used to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JarPomBenchmark {
+
+	private static final int POMS = 1000;
+
+	private File folder;
+	private JarPomGenerator generator;
+	private String[] groupIds = new String[POMS];
+	private String[] artifactIds = new String[POMS];
+
+	@Setup(Level.Trial)
+	public void createGenerator() throws IOException {
+		folder = Benchmarks.createTempFolder("poms");
+		generator = new JarPomGenerator(folder);
+		for (int i = 0; i < POMS; i++) {
+			groupIds[i] = "com.oracle.jdeveloper.jars.oracle_common.modules.oracle_module" + i % 12 + "_11_1_1";
+			artifactIds[i] = "module" + i;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFolder() {
+		SyntheticHome.delete(folder);
+	}
+
+	@Benchmark
+	public long template() throws IOException {
+		long length = 0;
+		for (int i = 0; i < POMS; i++) {
+			length += generator.getPomFile(groupIds[i], artifactIds[i], "11.1.1.7.0").getName().length();
+		}
+		return length;
+	}
+
+	@Benchmark
+	public long xpp3Writer() throws IOException {
+		long length = 0;
+		for (int i = 0; i < POMS; i++) {
+			Model model = new Model();
+			model.setModelVersion("4.0.0");
+			model.setGroupId(groupIds[i]);
+			model.setArtifactId(artifactIds[i]);
+			model.setVersion("11.1.1.7.0");
+			model.setPackaging("jar");
+			model.setDescription("JDeveloper imported jar.");
+			StringWriter writer = new StringWriter();
+			new MavenXpp3Writer().write(writer, model);
+			length += writer.getBuffer().length();
+		}
+		return length;
+	}
+
+}
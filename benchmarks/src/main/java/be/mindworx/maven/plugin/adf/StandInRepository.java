@@ -0,0 +1,225 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP Maven repository, standing in for a repository manager in
+ * the deploy load harness. Uploads are kept in memory. The conditions of a
+ * remote repository can be simulated:
+ * <ul>
+ * <li>a latency added to every request;</li>
+ * <li>a bandwidth cap on the uploads, shared by all connections;</li>
+ * <li>a rate of requests answered with a 503;</li>
+ * <li>a rate of requests that never get an answer, until the connection is
+ * closed after the stall time.</li>
+ * </ul>
+ */
+class StandInRepository {
+
+	private final ConcurrentMap<String, byte[]> files = new ConcurrentHashMap<String, byte[]>();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong uploads = new AtomicLong();
+	private final AtomicLong bytesReceived = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final Random random;
+
+	private long latencyMillis;
+	private long bytesPerSecond;
+	private double errorRate;
+	private double timeoutRate;
+	private long stallMillis = 30000;
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private long nextTransferNanos;
+
+	StandInRepository(long seed) {
+		this.random = new Random(seed);
+	}
+
+	void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * @param bytesPerSecond
+	 *            the upload bandwidth of all connections together, 0 for no
+	 *            limit
+	 */
+	void setBytesPerSecond(long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	/**
+	 * @param errorRate
+	 *            the fraction of requests answered with a 503
+	 */
+	void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * @param timeoutRate
+	 *            the fraction of requests that are not answered
+	 */
+	void setTimeoutRate(double timeoutRate) {
+		this.timeoutRate = timeoutRate;
+	}
+
+	/**
+	 * @param stallMillis
+	 *            how long an unanswered request keeps its connection open,
+	 *            should exceed the request timeout of the client
+	 */
+	void setStallMillis(long stallMillis) {
+		this.stallMillis = stallMillis;
+	}
+
+	/**
+	 * @return the URL of the repository
+	 */
+	String start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/repository/", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					StandInRepository.this.handle(exchange);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/repository";
+	}
+
+	void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException, InterruptedException {
+		requests.incrementAndGet();
+		String method = exchange.getRequestMethod();
+		String path = exchange.getRequestURI().getPath();
+		if (latencyMillis > 0) {
+			Thread.sleep(latencyMillis);
+		}
+		byte[] body = "PUT".equals(method) ? read(exchange.getRequestBody()) : null;
+
+		double fault = random.nextDouble();
+		if (fault < timeoutRate) {
+			timeouts.incrementAndGet();
+			Thread.sleep(stallMillis);
+			return;
+		}
+		if (fault < timeoutRate + errorRate) {
+			errors.incrementAndGet();
+			exchange.sendResponseHeaders(503, -1);
+			return;
+		}
+
+		if (body != null) {
+			files.put(path, body);
+			uploads.incrementAndGet();
+			exchange.sendResponseHeaders(201, -1);
+		} else if ("GET".equals(method) || "HEAD".equals(method)) {
+			byte[] content = files.get(path);
+			if (content == null) {
+				exchange.sendResponseHeaders(404, -1);
+			} else if ("HEAD".equals(method)) {
+				exchange.getResponseHeaders().set("Content-Length", Integer.toString(content.length));
+				exchange.sendResponseHeaders(200, -1);
+			} else {
+				exchange.sendResponseHeaders(200, content.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(content);
+				out.close();
+			}
+		} else {
+			exchange.sendResponseHeaders(405, -1);
+		}
+	}
+
+	/**
+	 * Reads an upload, at most at the bandwidth cap.
+	 */
+	private byte[] read(InputStream in) throws IOException, InterruptedException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			throttle(n);
+			out.write(buffer, 0, n);
+			bytesReceived.addAndGet(n);
+		}
+		return out.toByteArray();
+	}
+
+	private void throttle(int bytes) throws InterruptedException {
+		if (bytesPerSecond <= 0) {
+			return;
+		}
+		long start;
+		synchronized (this) {
+			long now = System.nanoTime();
+			start = Math.max(now, nextTransferNanos);
+			nextTransferNanos = start + TimeUnit.SECONDS.toNanos(bytes) / bytesPerSecond;
+		}
+		long wait = start - System.nanoTime();
+		if (wait > 0) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+	}
+
+	/**
+	 * @return the number of stored files, including the checksums and
+	 *         metadata
+	 */
+	int size() {
+		return files.size();
+	}
+
+	long getRequests() {
+		return requests.get();
+	}
+
+	long getUploads() {
+		return uploads.get();
+	}
+
+	long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	long getErrors() {
+		return errors.get();
+	}
+
+	long getTimeouts() {
+		return timeouts.get();
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.googlecode.mavenadf;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers shared by the benchmarks.
+ *
+ * @author Krisje
+ *
+ */
+public final class Benchmarks {
+
+	private Benchmarks() {
+	}
+
+	public static File createTempFolder(String prefix) throws IOException {
+		File folder = File.createTempFile("adf-" + prefix, "");
+		if (!folder.delete() || !folder.mkdirs()) {
+			throw new IOException("Cannot create " + folder);
+		}
+		return folder;
+	}
+
+	/**
+	 * Adds every jar below the folder to the list.
+	 */
+	static void findJars(File folder, List<File> jars) {
+		File[] files = folder.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.isDirectory()) {
+				findJars(file, jars);
+			} else if (file.getName().endsWith(".jar")) {
+				jars.add(file);
+			}
+		}
+	}
+
+	/**
+	 * @return the extensions declared in the jars, as read by the scan
+	 */
+	static List<JarExtension> readExtensions(List<File> jars) throws IOException {
+		List<JarExtension> extensions = new ArrayList<JarExtension>();
+		JarProbe probe = new JarProbe(ScanContext.DEFAULT_MAX_OPEN_FILES);
+		for (File jar : jars) {
+			byte[] xml = probe.readEntry(jar, "META-INF/extension.xml");
+			if (xml != null) {
+				extensions.add(new StaxExtensionParser().parse(jar, new ByteArrayInputStream(xml)));
+			}
+		}
+		return extensions;
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.googlecode.mavenadf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.digester.Digester;
+import org.xml.sax.SAXException;
+
+/**
+ * The original commons-digester based extension.xml parser. Superseded by
+ * {@link StaxExtensionParser}, kept here as the baseline it is measured
+ * against.
+ *
+ * @author Krisje
+ *
+ */
+class DigesterExtensionParser implements ExtensionParser {
+
+	@Override
+	public JarExtension parse(File file, InputStream in) {
+		JarExtension extension = new JarExtension(file);
+		try {
+			Digester digester = new Digester();
+			addRules(digester);
+			digester.push(extension);
+			digester.parse(in);
+		} catch (IOException e1) {
+			e1.printStackTrace();
+		} catch (SAXException e) {
+			e.printStackTrace();
+		}
+		return extension;
+	}
+
+	/*
+	 * <extension id="oracle.adf.share.dt" version="11.1.1.5.37.60.13"
+	 * esdk-version="1.0" rsbundle-class="oracle.adf.share.dt.res.Bundle"
+	 * xmlns="http://jcp.org/jsr/198/extension-manifest"> ... <library
+	 * name="JPS Designtime">
+	 * <classpath>../../../oracle_common/modules/oracle.jps_11
+	 * .1.1/jps-ee.jar</classpath> </library> ...
+	 */
+
+	private void addRules(Digester d) {
+		// d.addBeanPropertySetter("extension/hooks/libraries");
+
+		d.addSetProperties("*/extension", "id", "id");
+		d.addSetProperties("*/extension", "version", "version");
+		d.addSetProperties("*/ex:extension", "id", "id");
+		d.addSetProperties("*/ex:extension", "version", "version");
+		d.addObjectCreate("*/libraries/library", LibraryDefinition.class);
+		d.addSetProperties("*/libraries/library");
+		d.addCallMethod("*/libraries/library/classpath", "addJarFile", 0);
+		d.addCallMethod("*/libraries/library/srcpath", "addSrcFile", 0);
+		d.addCallMethod("*/libraries/library/docpath", "addDocFile", 0);
+		d.addSetNext("*/libraries/library", "addDefinition");
+
+	}
+
+}
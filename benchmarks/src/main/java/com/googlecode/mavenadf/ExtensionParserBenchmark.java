@@ -0,0 +1,100 @@
+package com.googlecode.mavenadf;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and parsing the extension.xml files of a synthetic home, with the
+ * StAX parser used by the scan and the original Digester parser. One
+ * operation handles every jar of the home.
+ *
+ * @author Krisje
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExtensionParserBenchmark {
+
+	@Param({ "stax", "digester" })
+	private String parser;
+
+	private File folder;
+	private List<File> jars = new ArrayList<File>();
+	private List<File> extensionJars = new ArrayList<File>();
+	private List<byte[]> extensionXmls = new ArrayList<byte[]>();
+	private ExtensionParser extensionParser;
+
+	@Setup(Level.Trial)
+	public void createHome() throws IOException {
+		folder = Benchmarks.createTempFolder("parser");
+		File jdevHome = new SyntheticHome(new File(folder, "Middleware"), 2000, 20, 1).create();
+		Benchmarks.findJars(jdevHome, jars);
+		JarProbe probe = new JarProbe(ScanContext.DEFAULT_MAX_OPEN_FILES);
+		for (File jar : jars) {
+			byte[] xml = probe.readEntry(jar, "META-INF/extension.xml");
+			if (xml != null) {
+				extensionJars.add(jar);
+				extensionXmls.add(xml);
+			}
+		}
+		extensionParser = "digester".equals(parser) ? new DigesterExtensionParser() : new StaxExtensionParser();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteHome() {
+		SyntheticHome.delete(folder);
+	}
+
+	/**
+	 * Parses the extension.xml files already in memory.
+	 */
+	@Benchmark
+	public int parse() {
+		int definitions = 0;
+		for (int i = 0; i < extensionXmls.size(); i++) {
+			JarExtension extension = extensionParser.parse(extensionJars.get(i), new ByteArrayInputStream(extensionXmls.get(i)));
+			definitions += extension.getDefinitions().size();
+		}
+		return definitions;
+	}
+
+	/**
+	 * Looks for an extension.xml in every jar of the JDeveloper home and
+	 * parses the ones found, like the scan does.
+	 */
+	@Benchmark
+	public int readAndParse() throws IOException {
+		JarProbe probe = new JarProbe(ScanContext.DEFAULT_MAX_OPEN_FILES);
+		int definitions = 0;
+		for (File jar : jars) {
+			byte[] xml = probe.readEntry(jar, "META-INF/extension.xml");
+			if (xml != null) {
+				definitions += extensionParser.parse(jar, new ByteArrayInputStream(xml)).getDefinitions().size();
+			}
+		}
+		return definitions;
+	}
+
+}
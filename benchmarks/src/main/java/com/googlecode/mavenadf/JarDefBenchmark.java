@@ -0,0 +1,111 @@
+package com.googlecode.mavenadf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Resolving the library paths of a synthetic home to {@link JarDef}s, and
+ * computing their Maven coordinates. The manifests are not followed, so only
+ * the path resolution is measured. One operation handles every library of the
+ * home.
+ *
+ * @author Krisje
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JarDefBenchmark {
+
+	private static final String GROUP_ID_PREFIX = "com.oracle.jdeveloper";
+
+	private File folder;
+	private File jdevHome;
+	private List<JarExtension> extensions;
+	private ScanContext warmContext;
+	private List<JarLibrary> libraries = new ArrayList<JarLibrary>();
+
+	@Setup(Level.Trial)
+	public void createHome() throws IOException {
+		folder = Benchmarks.createTempFolder("jardef");
+		jdevHome = new SyntheticHome(new File(folder, "Middleware"), 2000, 20, 1).create();
+		List<File> jars = new ArrayList<File>();
+		Benchmarks.findJars(jdevHome, jars);
+		extensions = Benchmarks.readExtensions(jars);
+		warmContext = new ScanContext(jdevHome, false, false, null);
+		for (JarExtension extension : extensions) {
+			for (LibraryDefinition definition : extension.getDefinitions()) {
+				JarLibrary library = definition.createLibrary(warmContext, extension.getFile());
+				library.setGroupIdPrefix(GROUP_ID_PREFIX);
+				libraries.add(library);
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteHome() {
+		SyntheticHome.delete(folder);
+	}
+
+	/**
+	 * Resolves the paths with a new scan, every path is looked up on the file
+	 * system.
+	 */
+	@Benchmark
+	public int resolvePaths() {
+		return resolve(new ScanContext(jdevHome, false, false, null));
+	}
+
+	/**
+	 * Resolves the paths with a scan that has resolved them before.
+	 */
+	@Benchmark
+	public int resolveCachedPaths() {
+		return resolve(warmContext);
+	}
+
+	private int resolve(ScanContext context) {
+		int jars = 0;
+		for (JarExtension extension : extensions) {
+			for (LibraryDefinition definition : extension.getDefinitions()) {
+				jars += definition.createLibrary(context, extension.getFile()).getJars().size();
+			}
+		}
+		return jars;
+	}
+
+	/**
+	 * Computes the groupId and artifactId of every jar of every library.
+	 */
+	@Benchmark
+	public void coordinates(Blackhole blackhole) throws IOException {
+		for (JarLibrary library : libraries) {
+			for (JarDef jar : library.getJars()) {
+				jar.resetCoordinates();
+				blackhole.consume(jar.getGroupId());
+				blackhole.consume(jar.getArtifactId());
+			}
+		}
+	}
+
+}
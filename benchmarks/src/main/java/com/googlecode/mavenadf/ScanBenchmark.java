@@ -0,0 +1,76 @@
+package com.googlecode.mavenadf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A complete {@link JarLoader} scan of a synthetic home: walking the folders,
+ * reading and parsing the extension.xml files, resolving the library paths
+ * and manifests and writing the library POMs.
+ *
+ * @author Krisje
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanBenchmark {
+
+	@Param({ "500", "2000" })
+	private int jars;
+
+	@Param({ "1", "4" })
+	private int scanThreads;
+
+	@Param({ "64" })
+	private int maxOpenFiles;
+
+	@Param({ "false", "true" })
+	private boolean scanCache;
+
+	private File folder;
+	private File jdevHome;
+	private File workFolder;
+
+	@Setup(Level.Trial)
+	public void createHome() throws IOException {
+		folder = Benchmarks.createTempFolder("scan");
+		jdevHome = new SyntheticHome(new File(folder, "Middleware"), jars, 20, 1).create();
+		workFolder = new File(folder, "deploy-adf");
+		// fills the scan cache, if used
+		scan();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteHome() {
+		SyntheticHome.delete(folder);
+	}
+
+	@Benchmark
+	public int scan() {
+		JarLoader loader = new JarLoader(workFolder, jdevHome, "11.1.1.7.0", "com.oracle.jdeveloper", false, true, "pom", scanThreads, scanCache);
+		loader.setMaxOpenFiles(maxOpenFiles);
+		List<JarLibrary> libraries = loader.getLibraries();
+		return libraries.size() + loader.getJars().size();
+	}
+
+}
@@ -0,0 +1,198 @@
+package com.googlecode.mavenadf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/**
+ * Builds a synthetic Middleware home to benchmark the scan without an Oracle
+ * installation. The layout follows a real JDeveloper 11g install:
+ * <ul>
+ * <li>extension jars in jdeveloper/jdev/extensions and
+ * jdeveloper/ide/extensions with a META-INF/extension.xml declaring libraries,
+ * their own jars under <code>${ide.extension.install.home}</code>;</li>
+ * <li>shared modules in oracle_common/modules, chained through the Class-Path
+ * of their manifests, also across module folders and to jars that do not
+ * exist;</li>
+ * <li>the JDBC driver of <code>${jdbc.library}</code> in wlserver_10.3;</li>
+ * <li>plain jars without extension.xml filling up the rest.</li>
+ * </ul>
+ * The same arguments always produce the same home.
+ *
+ * @author Krisje
+ *
+ */
+public class SyntheticHome {
+
+	private static final String NAMESPACE = "http://jcp.org/jsr/198/extension-manifest";
+	private static final int MODULE_FOLDERS = 12;
+	private static final int LIBRARIES_PER_EXTENSION = 3;
+	private static final int OWN_JARS_PER_EXTENSION = 2;
+
+	private final File root;
+	private final int jars;
+	private final int entriesPerJar;
+	private final Random random;
+	private final List<String> modules = new ArrayList<String>();
+
+	/**
+	 * @param root
+	 *            the Middleware home to create, emptied first
+	 * @param jars
+	 *            the approximate number of jars in the home
+	 * @param entriesPerJar
+	 *            the number of class entries in each jar, which determines
+	 *            the size of their central directories
+	 */
+	public SyntheticHome(File root, int jars, int entriesPerJar, long seed) {
+		this.root = root;
+		this.jars = Math.max(50, jars);
+		this.entriesPerJar = entriesPerJar;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * @return the JDeveloper home inside the Middleware home
+	 */
+	public File getJdevHome() {
+		return new File(root, "jdeveloper");
+	}
+
+	public File create() throws IOException {
+		delete(root);
+		int moduleCount = jars * 2 / 5;
+		int extensionCount = Math.max(1, jars / 25);
+		int plainCount = Math.max(0, jars - moduleCount - extensionCount * (1 + OWN_JARS_PER_EXTENSION) - 1);
+
+		writeJar(new File(root, "wlserver_10.3/server/lib/ojdbc6.jar"), null, null);
+		for (int i = 0; i < moduleCount; i++) {
+			modules.add("oracle.module" + i % MODULE_FOLDERS + "_11.1.1/module" + i + ".jar");
+		}
+		for (int i = 0; i < moduleCount; i++) {
+			writeJar(new File(root, "oracle_common/modules/" + modules.get(i)), getModuleClassPath(i), null);
+		}
+		for (int e = 0; e < extensionCount; e++) {
+			String folder = e % 4 == 0 ? "ide/extensions" : "jdev/extensions";
+			File extension = new File(getJdevHome(), folder + "/oracle.extension" + e + ".jar");
+			writeJar(extension, null, getExtensionXml(e));
+			for (int j = 0; j < OWN_JARS_PER_EXTENSION; j++) {
+				writeJar(new File(getJdevHome(), folder + "/oracle.extension" + e + "/lib/own" + j + ".jar"), null, null);
+			}
+		}
+		for (int i = 0; i < plainCount; i++) {
+			writeJar(new File(getJdevHome(), "lib/plain" + i % 7 + "/plain" + i + ".jar"), null, null);
+		}
+		return getJdevHome();
+	}
+
+	/**
+	 * The next modules of the same folder, sometimes a module of another folder
+	 * and sometimes a jar that does not exist.
+	 */
+	private String getModuleClassPath(int index) {
+		StringBuilder classPath = new StringBuilder();
+		for (int next = index + MODULE_FOLDERS; next < modules.size() && next <= index + 2 * MODULE_FOLDERS; next += MODULE_FOLDERS) {
+			classPath.append(modules.get(next).substring(modules.get(next).indexOf('/') + 1)).append(' ');
+		}
+		int r = random.nextInt(10);
+		if (r < 3) {
+			classPath.append("../").append(modules.get(random.nextInt(modules.size()))).append(' ');
+		} else if (r == 3) {
+			classPath.append("missing").append(index).append(".jar ");
+		}
+		return classPath.length() > 0 ? classPath.toString().trim() : null;
+	}
+
+	private String getExtensionXml(int extension) {
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<extension xmlns=\"").append(NAMESPACE).append("\" id=\"oracle.extension").append(extension)
+				.append("\" version=\"11.1.1.7.").append(extension).append("\" esdk-version=\"1.0\">\n");
+		xml.append("  <name>Extension ").append(extension).append("</name>\n");
+		xml.append("  <owner>Oracle</owner>\n");
+		xml.append("  <dependencies>\n    <import>oracle.ide</import>\n  </dependencies>\n");
+		xml.append("  <hooks>\n");
+		xml.append("    <feature-hook>\n      <description>Synthetic extension</description>\n    </feature-hook>\n");
+		xml.append("    <libraries>\n");
+		for (int l = 0; l < LIBRARIES_PER_EXTENSION; l++) {
+			xml.append("      <library name=\"Library ").append(extension).append('.').append(l).append(" (Runtime)\" deployed=\"")
+					.append(l > 0).append("\">\n");
+			for (int m = 0; m < 4 && !modules.isEmpty(); m++) {
+				xml.append("        <classpath>../../../oracle_common/modules/").append(modules.get(random.nextInt(modules.size())))
+						.append("</classpath>\n");
+			}
+			xml.append("        <classpath>${ide.extension.install.home}/lib/own").append(l % OWN_JARS_PER_EXTENSION).append(".jar</classpath>\n");
+			if (l == 0) {
+				xml.append("        <classpath>${jdbc.library}</classpath>\n");
+				xml.append("        <classpath>../../missing/none").append(extension).append(".jar</classpath>\n");
+			}
+			xml.append("        <srcpath>../../src/extension").append(extension).append("-src.zip</srcpath>\n");
+			xml.append("        <docpath>../../doc/extension").append(extension).append("-doc.zip</docpath>\n");
+			xml.append("      </library>\n");
+		}
+		xml.append("    </libraries>\n");
+		xml.append("  </hooks>\n");
+		xml.append("</extension>\n");
+		return xml.toString();
+	}
+
+	private void writeJar(File file, String classPath, String extensionXml) throws IOException {
+		file.getParentFile().mkdirs();
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_TITLE, file.getName());
+		if (classPath != null) {
+			manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+		}
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(file), manifest);
+		try {
+			if (extensionXml != null) {
+				out.putNextEntry(new ZipEntry("META-INF/extension.xml"));
+				out.write(extensionXml.getBytes("UTF-8"));
+				out.closeEntry();
+			}
+			byte[] content = new byte[256];
+			for (int i = 0; i < entriesPerJar; i++) {
+				random.nextBytes(content);
+				out.putNextEntry(new ZipEntry("oracle/synthetic/package" + i % 5 + "/Class" + i + ".class"));
+				out.write(content);
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Creates a home from the command line: folder, number of jars (default
+	 * 2000) and entries per jar (default 20).
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: SyntheticHome <folder> [jars] [entriesPerJar]");
+			System.exit(1);
+		}
+		int jars = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int entries = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		File jdevHome = new SyntheticHome(new File(args[0]), jars, entries, 1).create();
+		System.out.println("JDeveloper home: " + jdevHome.getAbsolutePath());
+	}
+
+}
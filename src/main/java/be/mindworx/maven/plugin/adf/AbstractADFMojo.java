@@ -0,0 +1,204 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+
+import com.googlecode.mavenadf.JarDef;
+import com.googlecode.mavenadf.JarLibrary;
+import com.googlecode.mavenadf.JarLoader;
+
+/**
+ * The parameters and steps shared by the goals that scan a JDeveloper
+ * installation folder for ADF libraries: what to scan, how the artifacts are
+ * named and how the scan is run.
+ */
+public abstract class AbstractADFMojo extends AbstractMojo {
+
+	/**
+	 * The default Maven project created when building the plugin
+	 * 
+	 * @parameter default-value="${project}"
+	 * @required
+	 * @readonly
+	 */
+	private MavenProject project;
+
+	/**
+	 * The fixed version used for deploying the ADF libraries and jar files.
+	 * 
+	 * @parameter expression="${adfVersion}";
+	 * @required
+	 */
+	private String adfVersion;
+
+	/**
+	 * JDeveloper home folder.
+	 * 
+	 * @parameter expression="${jdevHome}";
+	 * @required
+	 */
+	private File jdevHome;
+
+	/**
+	 * Use classpath manifest for resolving dependent jar libraries.
+	 * 
+	 * @parameter default-value="true"
+	 * @required
+	 */
+	private boolean useClasspathManifest;
+
+	/**
+	 * Type packaging type used when deploying adf library artifacts
+	 * 
+	 * @parameter default-value="pom"
+	 * @required
+	 */
+	private String packagingType;
+
+	/**
+	 * The prefix used when generating the groupId for the artifact. i.e. (
+	 * com.oracle.jdeveloper )
+	 * 
+	 * @parameter expression="${groupIdPrefix}"
+	 *            default-value="com.oracle.jdeveloper"
+	 * @required
+	 */
+	private String groupIdPrefix;
+
+	/**
+	 * Number of threads used to scan the JDeveloper home for libraries. A
+	 * value of 0 or less uses one thread per available processor, 1 scans
+	 * serially.
+	 * 
+	 * @parameter expression="${scanThreads}" default-value="0"
+	 */
+	private int scanThreads;
+
+	/**
+	 * Keep what was read from the jars of the JDeveloper home in a cache file
+	 * in the deploy-adf work folder, so a later scan only reads the jars that
+	 * changed.
+	 * 
+	 * @parameter expression="${scanCache}" default-value="false"
+	 */
+	private boolean scanCache;
+
+	/**
+	 * Maximum number of jars the scan keeps open at the same time. Only the
+	 * central directory and the entry that is needed are read from a jar, and
+	 * it is closed right after.
+	 * 
+	 * @parameter expression="${maxOpenFiles}" default-value="64"
+	 */
+	private int maxOpenFiles;
+
+	/**
+	 * Write the MD5, SHA-1 and SHA-256 hashes of every jar as comments in the
+	 * dependencies of the library POMs. Each jar is read once for all hashes,
+	 * and the hashes are kept in the scan cache. Off by default: without the
+	 * scan cache every run reads every jar in full once more to hash it.
+	 * 
+	 * @parameter expression="${pomDigests}" default-value="false"
+	 */
+	private boolean pomDigests;
+
+	protected String getAdfVersion() {
+		return adfVersion;
+	}
+
+	/**
+	 * @return the work folder of all goals, which holds the generated POMs,
+	 *         the scan cache and the files kept between runs
+	 */
+	protected File getWorkFolder() {
+		return new File(project.getBuild().getDirectory(), "deploy-adf");
+	}
+
+	protected JarLoader createJarLoader(File workFolder) {
+		int threads = scanThreads > 0 ? scanThreads : Runtime.getRuntime().availableProcessors();
+		JarLoader jarLoader = new JarLoader(workFolder, jdevHome, adfVersion, groupIdPrefix, false, useClasspathManifest, packagingType, threads,
+				scanCache);
+		jarLoader.setMaxOpenFiles(maxOpenFiles);
+		jarLoader.setPomDigests(pomDigests);
+		return jarLoader;
+	}
+
+	protected JarPomGenerator createJarPomGenerator(File workFolder) throws MojoExecutionException {
+		try {
+			return new JarPomGenerator(new File(workFolder, "jar-poms"));
+		} catch (IOException e) {
+			throw new MojoExecutionException("Error preparing pom template: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Scans the JDeveloper home and writes all libraries and jars with their
+	 * POMs to the repository, then closes it.
+	 */
+	protected void writeRepository(JarLoader jarLoader, RepositoryBundle bundle) throws MojoExecutionException {
+		boolean completed = false;
+		try {
+			JarPomGenerator jarPomGenerator = createJarPomGenerator(getWorkFolder());
+			for (JarLibrary library : jarLoader.getLibraries()) {
+				bundle.add(library.getGroupId(), library.getArtifactId(), library.getVersion(), library.getPackaging(), library.getPomFile());
+			}
+			for (Map.Entry<String, List<JarDef>> group : groupDeployableJars(jarLoader.getJars()).entrySet()) {
+				String groupId = group.getKey();
+				for (JarDef jar : group.getValue()) {
+					String version = jar.getLibrary().getVersion();
+					if (bundle.add(groupId, jar.getArtifactId(), version, "pom", jarPomGenerator.getPomFile(groupId, jar.getArtifactId(), version))) {
+						bundle.add(groupId, jar.getArtifactId(), version, "jar", new File(jar.getFilename()));
+					} else {
+						getLog().warn("Left out " + jar.getFilename() + ", the repository already holds " + groupId + ":" + jar.getArtifactId() + ":" + version);
+					}
+				}
+			}
+			bundle.close();
+			completed = true;
+		} catch (IOException e) {
+			throw new MojoExecutionException("Error writing the repository " + bundle.getOutput() + ": " + e.getMessage(), e);
+		} finally {
+			if (!completed) {
+				bundle.abort();
+			}
+		}
+	}
+
+	/**
+	 * Groups the jars to deploy by their groupId, jars are only batched together
+	 * with jars of the same groupId.
+	 */
+	protected Map<String, List<JarDef>> groupDeployableJars(Set<JarDef> jars) throws MojoExecutionException {
+		Map<String, List<JarDef>> jarsByGroupId = new LinkedHashMap<String, List<JarDef>>();
+		try {
+			for (JarDef jar : jars) {
+				if (isDeployable(jar)) {
+					String groupId = jar.getGroupId();
+					List<JarDef> group = jarsByGroupId.get(groupId);
+					if (group == null) {
+						group = new ArrayList<JarDef>();
+						jarsByGroupId.put(groupId, group);
+					}
+					group.add(jar);
+				}
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+		return jarsByGroupId;
+	}
+
+	protected static boolean isDeployable(JarDef jar) {
+		return (jar.getType() == JarDef.JAR || jar.getType() == JarDef.MANIFEST) && jar.exists() && !jar.getFilename().endsWith("-SNAPSHOT.jar");
+	}
+
+}
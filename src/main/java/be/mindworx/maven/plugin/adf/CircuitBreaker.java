@@ -0,0 +1,162 @@
+package be.mindworx.maven.plugin.adf;
+
+/**
+ * Stops all deployments for a while when the repository looks overloaded or
+ * down, instead of letting every deployment retry against it.
+ * <p>
+ * The breaker opens after a number of consecutive timeouts or server errors.
+ * While open no deployment is started; after the cool-down a single trial
+ * deployment is let through. When it succeeds the breaker closes again, when
+ * it fails the breaker opens with twice the cool-down. A trial that fails
+ * when the cool-down already reached its maximum breaks the circuit for good:
+ * the repository is considered unavailable and the remaining deployments
+ * fail without being tried.
+ * <p>
+ * Only the deployment that holds the trial decides its outcome. Deployments
+ * that were already running when the breaker opened only count as
+ * consecutive failures or successes.
+ */
+class CircuitBreaker {
+
+	/**
+	 * Allows a deployment to start, handed back with its outcome.
+	 */
+	static final class Permit {
+
+		private final long wait;
+
+		private Permit(long wait) {
+			this.wait = wait;
+		}
+
+		/**
+		 * @return 0 if the deployment may start, otherwise the milliseconds
+		 *         to wait before asking again
+		 */
+		long getWait() {
+			return wait;
+		}
+	}
+
+	private static final Permit CLOSED = new Permit(0);
+
+	private final int threshold;
+	private final long initialCoolDownMillis;
+	private final long maxCoolDownMillis;
+
+	private int consecutiveFailures;
+	private long coolDownMillis;
+	private long openUntil;
+	private boolean open;
+	private Permit trial;
+	private boolean broken;
+	private int trips;
+
+	/**
+	 * @param threshold
+	 *            the number of consecutive timeouts or server errors that
+	 *            open the breaker, 0 to never open it
+	 */
+	CircuitBreaker(int threshold, long initialCoolDownMillis, long maxCoolDownMillis) {
+		this.threshold = threshold;
+		this.initialCoolDownMillis = Math.max(1, initialCoolDownMillis);
+		this.maxCoolDownMillis = Math.max(this.initialCoolDownMillis, maxCoolDownMillis);
+		this.coolDownMillis = this.initialCoolDownMillis;
+	}
+
+	/**
+	 * Asks to start a deployment.
+	 *
+	 * @return the permit to hand back with the outcome of the deployment,
+	 *         when it may start
+	 */
+	synchronized Permit acquire() {
+		if (!open) {
+			return CLOSED;
+		}
+		long wait = openUntil - System.currentTimeMillis();
+		if (wait > 0) {
+			return new Permit(wait);
+		}
+		if (trial != null) {
+			// another deployment is trying, wait for its outcome
+			return new Permit(initialCoolDownMillis);
+		}
+		trial = new Permit(0);
+		return trial;
+	}
+
+	/**
+	 * Ends a deployment that did not contact the repository, e.g. because
+	 * all its artifacts were already deployed. A trial goes to another
+	 * deployment.
+	 */
+	synchronized void release(Permit permit) {
+		if (permit == trial) {
+			trial = null;
+		}
+	}
+
+	synchronized void onSuccess(Permit permit) {
+		consecutiveFailures = 0;
+		if (permit == trial) {
+			open = false;
+			trial = null;
+			coolDownMillis = initialCoolDownMillis;
+		}
+	}
+
+	/**
+	 * @param overload
+	 *            whether the failure suggests that the repository is
+	 *            overloaded or down
+	 * @return whether the breaker opened because of this failure
+	 */
+	synchronized boolean onFailure(Permit permit, boolean overload) {
+		if (!overload) {
+			// says nothing about the repository
+			release(permit);
+			return false;
+		}
+		if (open) {
+			consecutiveFailures++;
+			if (permit != trial) {
+				return false;
+			}
+			trial = null;
+			if (coolDownMillis >= maxCoolDownMillis) {
+				broken = true;
+				return false;
+			}
+			coolDownMillis = Math.min(coolDownMillis * 2, maxCoolDownMillis);
+			openUntil = System.currentTimeMillis() + coolDownMillis;
+			return false;
+		}
+		if (threshold <= 0 || ++consecutiveFailures < threshold) {
+			return false;
+		}
+		open = true;
+		trips++;
+		openUntil = System.currentTimeMillis() + coolDownMillis;
+		return true;
+	}
+
+	/**
+	 * @return whether the repository is considered unavailable
+	 */
+	synchronized boolean isBroken() {
+		return broken;
+	}
+
+	synchronized long getCoolDownMillis() {
+		return coolDownMillis;
+	}
+
+	/**
+	 * @return the number of times the breaker opened
+	 */
+	synchronized int getTrips() {
+		return trips;
+	}
+
+}
@@ -2,27 +2,25 @@ package be.mindworx.maven.plugin.adf;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.maven.RepositoryUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
 import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
-import org.apache.maven.model.Model;
-import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.LegacySupport;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.apache.maven.project.MavenProject;
 import org.apache.maven.repository.RepositorySystem;
-import org.codehaus.plexus.util.IOUtil;
+import org.apache.maven.wagon.PathUtils;
 import org.codehaus.plexus.util.StringUtils;
-import org.codehaus.plexus.util.WriterFactory;
 import org.sonatype.aether.RepositorySystemSession;
 import org.sonatype.aether.deployment.DeployRequest;
 import org.sonatype.aether.deployment.DeploymentException;
@@ -33,6 +31,8 @@ import org.sonatype.aether.repository.RemoteRepository;
 import com.googlecode.mavenadf.JarDef;
 import com.googlecode.mavenadf.JarLibrary;
 import com.googlecode.mavenadf.JarLoader;
+import com.googlecode.mavenadf.Metrics;
+import com.googlecode.mavenadf.ScanListener;
 
 
 /**
@@ -43,48 +43,9 @@ import com.googlecode.mavenadf.JarLoader;
  * @phase deploy
  * @inheritByDefault true
  */
-public class DeployADFLibrariesMojo extends AbstractMojo {
+public class DeployADFLibrariesMojo extends AbstractADFMojo {
 
-	/**
-	 * The default Maven project created when building the plugin
-	 * 
-	 * @parameter default-value="${project}"
-	 * @required
-	 * @readonly
-	 */
-	private MavenProject project;
-
-	/**
-	 * The fixed version used for deploying the ADF libraries and jar files.
-	 * 
-	 * @parameter expression="${adfVersion}";
-	 * @required
-	 */
-	private String adfVersion;
-
-	/**
-	 * JDeveloper home folder.
-	 * 
-	 * @parameter expression="${jdevHome}";
-	 * @required
-	 */
-	private File jdevHome;
-
-	/**
-	 * Use classpath manifest for resolving dependent jar libraries.
-	 * 
-	 * @parameter default-value="true"
-	 * @required
-	 */
-	private boolean useClasspathManifest;
-
-	/**
-	 * Type packaging type used when deploying adf library artifacts
-	 * 
-	 * @parameter default-value="pom"
-	 * @required
-	 */
-	private String packagingType;
+	private static final int QUEUED_DEPLOYMENTS_PER_THREAD = 4;
 
 	/**
 	 * Server Id to map on the &lt;id&gt; under &lt;server&gt; section of
@@ -114,14 +75,15 @@ public class DeployADFLibrariesMojo extends AbstractMojo {
 	private String url;
 
 	/**
-	 * The prefix used when generating the groupId for the artifact. i.e. (
-	 * com.oracle.jdeveloper )
+	 * More repositories to deploy the same artifacts to, as a comma separated
+	 * list of <i>id::url</i> pairs, e.g. a disaster recovery mirror. Every
+	 * repository uses the repositoryLayout and the credentials of its id in
+	 * settings.xml, and gets its own ledger, journal and retries; a failing
+	 * or slow repository does not stop or hold back the others.
 	 * 
-	 * @parameter expression="${groupIdPrefix}"
-	 *            default-value="com.oracle.jdeveloper"
-	 * @required
+	 * @parameter expression="${additionalRepositories}"
 	 */
-	private String groupIdPrefix;
+	private String additionalRepositories;
 
 	/**
 	 * Flag whether Maven is currently in online/offline mode.
@@ -156,13 +118,6 @@ public class DeployADFLibrariesMojo extends AbstractMojo {
 	 */
 	private Map repositoryLayouts;
 
-	/**
-	 * @parameter default-value="${localRepository}"
-	 * @required
-	 * @readonly
-	 */
-	private ArtifactRepository localRepository;
-
 	/**
 	 * Parameter used to control how many times a failed deployment will be
 	 * retried before giving up and failing. If a value outside the range 1-10
@@ -174,64 +129,631 @@ public class DeployADFLibrariesMojo extends AbstractMojo {
 	 */
 	private int retryFailedDeploymentCount;
 
+	/**
+	 * Milliseconds to wait before retrying a failed deployment. The delay
+	 * doubles with every further attempt, up to retryMaxBackoff, with a random
+	 * jitter of up to half the delay. Other deployments continue meanwhile.
+	 * Rejected credentials and other 4xx errors are not retried.
+	 * 
+	 * @parameter expression="${retryBackoff}" default-value="1000"
+	 */
+	private long retryBackoff;
+
+	/**
+	 * Maximum milliseconds to wait between two attempts of a deployment, also
+	 * the maximum time all deployments are paused by the circuit breaker.
+	 * 
+	 * @parameter expression="${retryMaxBackoff}" default-value="60000"
+	 */
+	private long retryMaxBackoff;
+
+	/**
+	 * Number of consecutive timeouts or server errors after which all
+	 * deployments are paused, as the repository looks overloaded. After the
+	 * pause a single deployment is tried; the pause doubles every time that
+	 * fails, and the remaining deployments fail once it exceeds
+	 * retryMaxBackoff. 0 never pauses the deployments.
+	 * 
+	 * @parameter expression="${circuitBreakerThreshold}" default-value="5"
+	 */
+	private int circuitBreakerThreshold;
+
+	/**
+	 * Number of threads used to deploy artifacts concurrently. The POM and the
+	 * jar of a single artifact are always deployed in that order by the same
+	 * thread.
+	 * 
+	 * @parameter expression="${deployThreads}" default-value="1"
+	 */
+	private int deployThreads;
+
+	/**
+	 * Maximum number of artifacts deployed in a single deployment request. Jar
+	 * artifacts are only combined with jars of the same groupId, their POM and
+	 * jar count as one. Failed requests are retried as a whole.
+	 * 
+	 * @parameter expression="${deployBatchSize}" default-value="1"
+	 */
+	private int deployBatchSize;
+
+	/**
+	 * Only deploy artifacts that are new or changed since they were last
+	 * deployed to the same repository. The deployed artifacts are recorded in a
+	 * ledger file in the deploy-adf work folder.
+	 * 
+	 * @parameter expression="${incremental}" default-value="false"
+	 */
+	private boolean incremental;
+
+	/**
+	 * Fetch the checksums of all artifacts from the repository before
+	 * deploying, and skip artifacts that the repository already holds with the
+	 * same content. Only supported for file, http and https repositories with
+	 * the default layout.
+	 * 
+	 * @parameter expression="${skipExisting}" default-value="false"
+	 */
+	private boolean skipExisting;
+
+	/**
+	 * Scan the JDeveloper home and write the deployment plan to
+	 * deploy-plan.json in the deploy-adf work folder, without deploying
+	 * anything. The remote repository is only contacted when skipExisting is
+	 * set.
+	 * 
+	 * @parameter expression="${dryRun}" default-value="false"
+	 */
+	private boolean dryRun;
+
+	/**
+	 * Throughput of a single upload in kilobytes per second, used to estimate
+	 * the duration of the deployment in the plan of a dry run. The uploads
+	 * are spread over the deploy threads.
+	 * 
+	 * @parameter expression="${dryRunThroughput}" default-value="10240"
+	 */
+	private long dryRunThroughput;
+
+	/**
+	 * Continue the last run if it did not deploy everything, skipping the
+	 * artifacts it already deployed. Every run records the artifacts it
+	 * deployed in a journal file in the deploy-adf work folder, written after
+	 * every deployment request so it also survives an aborted run.
+	 * 
+	 * @parameter expression="${resume}" default-value="false"
+	 */
+	private boolean resume;
+
+	/**
+	 * Keep deploying when a deployment fails after its retries, and fail at the
+	 * end with a summary of all failed deployments. Together with resume, a
+	 * next run only deploys the failed artifacts.
+	 * 
+	 * @parameter expression="${continueOnError}" default-value="false"
+	 */
+	private boolean continueOnError;
+
+	/**
+	 * Deploy every library and its jars as soon as the scan has them ready, so
+	 * the scan and the uploads overlap. When false, or with dryRun or
+	 * skipExisting, the whole JDeveloper home is scanned before the first
+	 * upload.
+	 * 
+	 * @parameter expression="${pipeline}" default-value="true"
+	 */
+	private boolean pipeline;
+
+	/**
+	 * Place the jars in a file:// repository with hard links to the jars in
+	 * the JDeveloper home instead of copying them, when the file system allows
+	 * it and Maven runs on Java 7 or later. A file:// repository in the
+	 * default layout is always written directly instead of through Aether and
+	 * Wagon.
+	 * 
+	 * @parameter expression="${hardLinks}" default-value="true"
+	 */
+	private boolean hardLinks;
+
+	private RepositorySystemSession repositorySession;
+
+	private List<DeploymentTarget> targets;
+
+	private final List<DeploymentExecutor> executors = new ArrayList<DeploymentExecutor>();
+
+	private JarPomGenerator jarPomGenerator;
+
+	private Metrics metrics;
+
+	private FileDigests digests;
+
+	private long runStart;
+
+	private final AtomicBoolean firstDeployRecorded = new AtomicBoolean();
+
 	@Override
 	public void execute() throws MojoExecutionException, MojoFailureException {
-		failIfOffline();
+		long start = System.nanoTime();
+		runStart = start;
+		if (!dryRun || skipExisting) {
+			failIfOffline();
+		}
 
-		RemoteRepository remoteRepository = getDeploymentRepository();
+		repositorySession = legacySupport.getRepositorySession();
+		targets = getDeploymentTargets();
 
-		File targetFolder = new File(project.getBuild().getDirectory(), "deploy-adf");
-		JarLoader jarLoader = new JarLoader(targetFolder, jdevHome, adfVersion, groupIdPrefix, false, useClasspathManifest, packagingType);
+		File targetFolder = getWorkFolder();
+		JarLoader jarLoader = createJarLoader(targetFolder);
+		metrics = jarLoader.getMetrics();
+		try {
+			scanAndDeploy(jarLoader, targetFolder);
+		} finally {
+			metrics.record("run", start, 0, 0);
+			writeRunReport(targetFolder);
+		}
+	}
+
+	private void scanAndDeploy(JarLoader jarLoader, File targetFolder) throws MojoExecutionException {
+		digests = new FileDigests(jarLoader);
+		if (incremental) {
+			for (DeploymentTarget target : targets) {
+				target.setLedger(loadLedger(targetFolder, target));
+			}
+		}
+		jarPomGenerator = createJarPomGenerator(targetFolder);
+
+		// the remote checksums and the plan need all artifacts up front
+		boolean pipelined = pipeline && !dryRun && !skipExisting;
+		List<JarLibrary> libraries = null;
+		Map<String, List<JarDef>> jarsByGroupId = null;
+		if (!pipelined) {
+			libraries = jarLoader.getLibraries();
+			jarsByGroupId = groupDeployableJars(jarLoader.getJars());
+		}
+		if (skipExisting) {
+			for (DeploymentTarget target : targets) {
+				long start = System.nanoTime();
+				target.setRemoteChecksums(prefetchRemoteChecksums(target.getRepository(), libraries, jarsByGroupId));
+				target.getMetrics().record("remote-checksums", start, 0, 0);
+			}
+		}
 
-		List<JarLibrary> libraries = jarLoader.getLibraries();
-		deployJdevLibraries(libraries, remoteRepository);
-		deployJdevLibraryJars(jarLoader.getJars(), remoteRepository);
+		if (dryRun) {
+			for (int i = 0; i < targets.size(); i++) {
+				String name = i == 0 ? "deploy-plan.json" : targets.get(i).getFileName("deploy-plan", "json");
+				writeDeploymentPlan(new File(targetFolder, name), targets.get(i), libraries, jarsByGroupId);
+			}
+			jarLoader.writeMavenDependencyManagementFile();
+			return;
+		}
+
+		long start = System.nanoTime();
+		int threads = Math.max(1, deployThreads);
+		Object queueLock = new Object();
+		for (DeploymentTarget target : targets) {
+			target.setJournal(openJournal(targetFolder, target));
+			target.setFileRepository(openFileRepository(target.getRepository()));
+			RetryPolicy retryPolicy = new RetryPolicy(Math.max(1, Math.min(10, retryFailedDeploymentCount)), retryBackoff, retryMaxBackoff);
+			CircuitBreaker circuitBreaker = new CircuitBreaker(circuitBreakerThreshold, retryBackoff, retryMaxBackoff);
+			target.setExecutor(new DeploymentExecutor(threads, threads * QUEUED_DEPLOYMENTS_PER_THREAD, retryPolicy, circuitBreaker, continueOnError,
+					queueLock, getLog()), circuitBreaker);
+			executors.add(target.getExecutor());
+		}
+		boolean completed = false;
+		try {
+			if (pipelined) {
+				deployWhileScanning(jarLoader);
+			} else {
+				deployJdevLibraries(libraries);
+				deployJdevLibraryJars(jarsByGroupId);
+			}
+			for (DeploymentTarget target : targets) {
+				try {
+					target.getExecutor().awaitCompletion();
+				} catch (MojoExecutionException e) {
+					target.setFailure(e);
+				}
+			}
+			completed = true;
+		} finally {
+			for (DeploymentTarget target : targets) {
+				finishTarget(target, completed && target.getFailure() == null);
+			}
+			Metrics.Timer deployed = metrics.getTimer("deploy");
+			metrics.record("deployment", start, deployed.getBytes(), deployed.getItems());
+		}
+		failIfAnyTargetFailed();
 		jarLoader.writeMavenDependencyManagementFile();
 	}
 
-	private void deployJdevLibraries(List<JarLibrary> jdevLibraries, RemoteRepository remoteRepository) throws MojoExecutionException {
+	/**
+	 * Stops the executor of a repository, writes the metadata of a file
+	 * repository and saves the journal and ledger. With several repositories
+	 * the progress of each is logged.
+	 */
+	private void finishTarget(DeploymentTarget target, boolean completed) {
+		DeploymentExecutor executor = target.getExecutor();
+		executor.close();
+		String prefix = targets.size() > 1 ? target.getId() + ": " : "";
+		CircuitBreaker circuitBreaker = target.getCircuitBreaker();
+		if (executor.getRetryCount() > 0 || circuitBreaker.getTrips() > 0) {
+			getLog().info(prefix + "Retried " + executor.getRetryCount() + " deployments, paused all deployments " + circuitBreaker.getTrips() + " times");
+		}
+		FileRepository fileRepository = target.getFileRepository();
+		if (fileRepository != null) {
+			try {
+				fileRepository.writeMetadata();
+			} catch (IOException e) {
+				getLog().error(prefix + "Error writing the repository metadata: " + e.getMessage());
+				if (target.getFailure() == null) {
+					target.setFailure(new MojoExecutionException("Error writing the repository metadata: " + e.getMessage(), e));
+				}
+			}
+			if (fileRepository.getLinkedCount() + fileRepository.getCopiedCount() > 0) {
+				getLog().info(
+						prefix + "Linked " + fileRepository.getLinkedCount() + " jars, copied " + fileRepository.getCopiedCount() + " files ("
+								+ fileRepository.getCopiedBytes() / 1024 + " KB) to " + fileRepository.getBasedir());
+			}
+		}
+		// a run whose metadata could not be written is resumed to write it
+		closeJournal(target, completed && target.getFailure() == null);
+		saveLedger(target);
+		RemoteChecksums remoteChecksums = target.getRemoteChecksums();
+		if (remoteChecksums != null && remoteChecksums.getExistingCount() > 0) {
+			getLog().info(prefix + "Skipped " + remoteChecksums.getExistingCount() + " artifacts that are already in the repository");
+		}
+		if (targets.size() > 1) {
+			getLog().info(
+					prefix + (target.getFailure() == null ? "deployed " : "failed after deploying ") + target.getDeployedArtifacts() + " artifacts ("
+							+ target.getDeployedBytes() / 1024 + " KB) to " + target.getRepository().getUrl());
+		}
+	}
+
+	/**
+	 * Fails with the failure of the only repository as is, or with a summary
+	 * of the repositories that failed.
+	 */
+	private void failIfAnyTargetFailed() throws MojoExecutionException {
+		List<DeploymentTarget> failed = new ArrayList<DeploymentTarget>();
+		for (DeploymentTarget target : targets) {
+			if (target.getFailure() != null) {
+				failed.add(target);
+			}
+		}
+		if (failed.isEmpty()) {
+			return;
+		}
+		if (targets.size() == 1) {
+			throw failed.get(0).getFailure();
+		}
+		StringBuilder message = new StringBuilder("Deployment failed for " + failed.size() + " of " + targets.size() + " repositories:");
+		for (DeploymentTarget target : failed) {
+			message.append("\n  ").append(target).append(": ").append(target.getFailure().getMessage());
+		}
+		throw new MojoExecutionException(message.toString(), failed.get(0).getFailure());
+	}
+
+	/**
+	 * Writes the metrics of the run to deploy-report.json and
+	 * deploy-report.prom in the work folder. A failure is only logged, it must
+	 * not hide the outcome of the deployment.
+	 */
+	private void writeRunReport(File targetFolder) {
+		RunReport report = new RunReport(metrics, getAdfVersion(), targets);
+		try {
+			report.writeJson(new File(targetFolder, "deploy-report.json"));
+			report.writePrometheus(new File(targetFolder, "deploy-report.prom"));
+		} catch (IOException e) {
+			getLog().warn("Error writing run report: " + e.getMessage(), e);
+		}
+	}
+
+	private DeploymentLedger loadLedger(File targetFolder, DeploymentTarget target) throws MojoExecutionException {
+		try {
+			return new DeploymentLedger(new File(targetFolder, target.getFileName("ledger", "properties")), target.toString(), digests);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Error reading deployment ledger: " + e.getMessage(), e);
+		}
+	}
+
+	private DeploymentJournal openJournal(File targetFolder, DeploymentTarget target) throws MojoExecutionException {
+		String prefix = targets.size() > 1 ? target.getId() + ": " : "";
+		try {
+			DeploymentJournal runJournal = new DeploymentJournal(new File(targetFolder, target.getFileName("journal", "log")), resume, digests,
+					jarPomGenerator.getFolder());
+			if (runJournal.isResumed()) {
+				getLog().info(prefix + "Resuming the last run, " + runJournal.getResumedCount() + " artifacts were already deployed");
+			} else if (resume) {
+				getLog().info(prefix + "No unfinished run to resume, deploying all artifacts");
+			}
+			return runJournal;
+		} catch (IOException e) {
+			throw new MojoExecutionException("Error opening deployment journal: " + e.getMessage(), e);
+		}
+	}
+
+	private void closeJournal(DeploymentTarget target, boolean completed) {
+		DeploymentJournal journal = target.getJournal();
+		String prefix = targets.size() > 1 ? target.getId() + ": " : "";
+		if (journal.getSkippedCount() > 0) {
+			getLog().info(prefix + "Skipped " + journal.getSkippedCount() + " artifacts deployed by the resumed run");
+		}
+		try {
+			if (completed) {
+				journal.complete();
+			} else {
+				getLog().info(prefix + "Run again with -Dresume=true to deploy only the remaining artifacts, see " + journal.getFile());
+			}
+		} catch (IOException e) {
+			getLog().warn("Error writing deployment journal: " + e.getMessage(), e);
+		} finally {
+			journal.close();
+		}
+	}
+
+	private RemoteChecksums prefetchRemoteChecksums(RemoteRepository remoteRepository, List<JarLibrary> libraries,
+			Map<String, List<JarDef>> jarsByGroupId) throws MojoExecutionException {
+		if (!RemoteChecksums.isSupported(remoteRepository)) {
+			getLog().warn("Cannot check for existing artifacts in " + remoteRepository.getUrl() + ", all artifacts will be deployed");
+			return null;
+		}
+		List<org.sonatype.aether.artifact.Artifact> artifacts = new ArrayList<org.sonatype.aether.artifact.Artifact>();
+		for (JarLibrary jdevLibrary : libraries) {
+			artifacts.add(createArtifact(jdevLibrary.getGroupId(), jdevLibrary.getArtifactId(), jdevLibrary.getVersion(), jdevLibrary.getPackaging()));
+		}
+		for (Map.Entry<String, List<JarDef>> group : jarsByGroupId.entrySet()) {
+			for (JarDef jar : group.getValue()) {
+				artifacts.add(createArtifact(group.getKey(), jar.getArtifactId(), jar.getLibrary().getVersion(), "pom"));
+				artifacts.add(createArtifact(group.getKey(), jar.getArtifactId(), jar.getLibrary().getVersion(), "jar"));
+			}
+		}
+		RemoteChecksums checksums = new RemoteChecksums(remoteRepository, getLog(), digests);
+		checksums.prefetch(artifacts, deployThreads);
+		return checksums;
+	}
+
+	private void saveLedger(DeploymentTarget target) {
+		DeploymentLedger ledger = target.getLedger();
+		if (ledger != null) {
+			if (ledger.getUnchangedCount() > 0) {
+				String prefix = targets.size() > 1 ? target.getId() + ": " : "";
+				getLog().info(prefix + "Skipped " + ledger.getUnchangedCount() + " artifacts that are unchanged since their last deployment");
+			}
+			try {
+				ledger.save();
+			} catch (IOException e) {
+				getLog().warn("Error writing deployment ledger: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private void deployJdevLibraries(List<JarLibrary> jdevLibraries) throws MojoExecutionException {
+		for (List<JarLibrary> batch : partition(jdevLibraries, getDeployBatchSize())) {
+			deployLibraryBatch(batch);
+		}
+	}
+
+	/**
+	 * Queues the batch for every repository at once, so the repositories
+	 * upload the same files at about the same time, then waits until the
+	 * repository that is furthest ahead has room for the next batch.
+	 */
+	private void deployLibraryBatch(final List<JarLibrary> batch) throws MojoExecutionException {
+		for (final DeploymentTarget target : targets) {
+			target.getExecutor().execute(new DeploymentExecutor.Task() {
+
+				@Override
+				public boolean run() throws MojoExecutionException {
+					return deployArtifacts(target, createLibraryArtifacts(batch));
+				}
+			});
+		}
+		DeploymentExecutor.awaitRoom(executors);
+	}
+
+	/**
+	 * Scans the JDeveloper home and deploys the libraries and jars in the
+	 * meantime, each batch as soon as it is full. The executor holds back the
+	 * scan when the uploads cannot keep up.
+	 */
+	private void deployWhileScanning(JarLoader jarLoader) throws MojoExecutionException {
+		PipelinedDeployment deployment = new PipelinedDeployment();
+		try {
+			jarLoader.scan(deployment);
+		} catch (IllegalStateException e) {
+			if (e.getCause() instanceof MojoExecutionException) {
+				throw (MojoExecutionException) e.getCause();
+			}
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+		deployment.flush();
+	}
+
+	private List<org.sonatype.aether.artifact.Artifact> createLibraryArtifacts(List<JarLibrary> jdevLibraries) {
+		List<org.sonatype.aether.artifact.Artifact> artifacts = new ArrayList<org.sonatype.aether.artifact.Artifact>();
 		for (JarLibrary jdevLibrary : jdevLibraries) {
 			// Create the artifact
-			Artifact artifact = repositorySystem.createArtifact(jdevLibrary.getGroupId(), jdevLibrary.getArtifactId(), jdevLibrary.getVersion(),
-					jdevLibrary.getPackaging());
-			deployFile(remoteRepository, artifact, jdevLibrary.getPomFile());
+			artifacts.add(createArtifact(jdevLibrary.getGroupId(), jdevLibrary.getArtifactId(), jdevLibrary.getVersion(), jdevLibrary.getPackaging())
+					.setFile(jdevLibrary.getPomFile()));
+		}
+		return artifacts;
+	}
 
+	private void deployJdevLibraryJars(Map<String, List<JarDef>> jarsByGroupId) throws MojoExecutionException {
+		for (Map.Entry<String, List<JarDef>> group : jarsByGroupId.entrySet()) {
+			for (List<JarDef> batch : partition(group.getValue(), getDeployBatchSize())) {
+				deployJarBatch(group.getKey(), batch);
+			}
 		}
 	}
 
-	private void deployJdevLibraryJars(Set<JarDef> jars, RemoteRepository remoteRepository) throws MojoExecutionException {
-		try {
-			for (JarDef jar : jars) {
-				if ((jar.getType() == JarDef.JAR || jar.getType() == JarDef.MANIFEST) && jar.exists() && !jar.getFilename().endsWith("-SNAPSHOT.jar")) {
-					Artifact artifact = repositorySystem.createArtifact(jar.getGroupId(), jar.getArtifactId(), jar.getLibrary().getVersion(), "jar");
-					Artifact pomArtifact = repositorySystem.createArtifact(jar.getGroupId(), jar.getArtifactId(), jar.getLibrary().getVersion(), "pom");
+	/**
+	 * Queues the batch for every repository at once, see
+	 * {@link #deployLibraryBatch(List)}.
+	 */
+	private void deployJarBatch(final String groupId, final List<JarDef> batch) throws MojoExecutionException {
+		for (final DeploymentTarget target : targets) {
+			target.getExecutor().execute(new DeploymentExecutor.Task() {
+
+				@Override
+				public boolean run() throws MojoExecutionException {
+					return deployArtifacts(target, createJarArtifacts(groupId, batch));
+				}
+			});
+		}
+		DeploymentExecutor.awaitRoom(executors);
+	}
 
-					//ArtifactMetadata metadata = new ProjectArtifactMetadata(artifact, generatePomFile(jar.getGroupId(), jar.getArtifactId(), jar.getLibrary()
-					//		.getVersion()));
-					//artifact.addMetadata(metadata);
+	/**
+	 * @return the POM and jar artifact of each jar
+	 */
+	private List<org.sonatype.aether.artifact.Artifact> createJarArtifacts(String groupId, List<JarDef> jars) throws MojoExecutionException {
+		List<org.sonatype.aether.artifact.Artifact> artifacts = new ArrayList<org.sonatype.aether.artifact.Artifact>();
+		for (JarDef jar : jars) {
+			String version = jar.getLibrary().getVersion();
+
+			//ArtifactMetadata metadata = new ProjectArtifactMetadata(artifact, generatePomFile(jar.getGroupId(), jar.getArtifactId(), jar.getLibrary()
+			//		.getVersion()));
+			//artifact.addMetadata(metadata);
 
-					deployFile(remoteRepository, pomArtifact, generatePomFile(jar.getGroupId(), jar.getArtifactId(), jar.getLibrary().getVersion()));
-					deployFile(remoteRepository, artifact, new File(jar.getFilename()));
+			artifacts.add(createArtifact(groupId, jar.getArtifactId(), version, "pom").setFile(generatePomFile(groupId, jar.getArtifactId(), version)));
+			artifacts.add(createArtifact(groupId, jar.getArtifactId(), version, "jar").setFile(new File(jar.getFilename())));
+		}
+		return artifacts;
+	}
+
+	/**
+	 * Writes what would be deployed, in the requests that would be used.
+	 */
+	private void writeDeploymentPlan(File planFile, DeploymentTarget target, List<JarLibrary> libraries, Map<String, List<JarDef>> jarsByGroupId)
+			throws MojoExecutionException {
+		DeploymentPlan plan = new DeploymentPlan(target.getLedger(), target.getRemoteChecksums());
+		long bytesPerSecond = dryRunThroughput * 1024;
+		int threads = Math.max(1, deployThreads);
+		try {
+			for (List<JarLibrary> batch : partition(libraries, getDeployBatchSize())) {
+				plan.addRequest(createLibraryArtifacts(batch));
+			}
+			for (Map.Entry<String, List<JarDef>> group : jarsByGroupId.entrySet()) {
+				for (List<JarDef> batch : partition(group.getValue(), getDeployBatchSize())) {
+					plan.addRequest(createJarArtifacts(group.getKey(), batch));
 				}
 			}
+			plan.write(planFile, target.getRepository(), bytesPerSecond, threads, getDeployBatchSize());
 		} catch (IOException e) {
-			throw new MojoExecutionException(e.getMessage(), e);
+			throw new MojoExecutionException("Error writing deployment plan: " + e.getMessage(), e);
 		}
+		String prefix = targets.size() > 1 ? target.getId() + ": " : "";
+		getLog().info(
+				prefix + "Dry run: " + plan.getDeployCount() + " of " + plan.size() + " artifacts would be deployed (" + plan.getDeployBytes() / 1024
+						+ " KB, about " + Math.round(Math.ceil(plan.getEstimatedSeconds(bytesPerSecond, threads))) + " s with "
+						+ plan.getConcurrency(threads) + " concurrent uploads at " + dryRunThroughput + " KB/s), see " + planFile);
 	}
 
-	private void deployFile(RemoteRepository remoteRepository, Artifact artifact, File file) throws MojoExecutionException {
+	/**
+	 * @return whether the artifacts were deployed, <code>false</code> if all
+	 *         were skipped
+	 */
+	private boolean deployArtifacts(DeploymentTarget target, List<org.sonatype.aether.artifact.Artifact> artifacts) throws MojoExecutionException {
+		DeploymentLedger ledger = target.getLedger();
+		RemoteChecksums remoteChecksums = target.getRemoteChecksums();
+		DeploymentJournal journal = target.getJournal();
 		try {
+			if (ledger != null) {
+				artifacts = ledger.getChanged(artifacts);
+			}
+			if (remoteChecksums != null) {
+				artifacts = remoteChecksums.getChanged(artifacts);
+			}
+			if (journal != null) {
+				if (journal.isResumed() && target.getFileRepository() != null) {
+					// the resumed run may have stopped before writing their metadata
+					for (org.sonatype.aether.artifact.Artifact artifact : artifacts) {
+						target.getFileRepository().addVersion(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion());
+					}
+				}
+				artifacts = journal.getPending(artifacts);
+			}
+			if (artifacts.isEmpty()) {
+				return false;
+			}
 			// artifact.setRelease( true );
-			deploy(file, artifact, remoteRepository, localRepository);
+			long start = System.nanoTime();
+			try {
+				if (target.getFileRepository() != null) {
+					install(artifacts, target.getFileRepository());
+				} else {
+					deploy(artifacts, target.getRepository());
+				}
+			} catch (DeploymentException e) {
+				recordFailed(target, start, artifacts);
+				throw e;
+			} catch (IOException e) {
+				recordFailed(target, start, artifacts);
+				throw e;
+			}
+			recordDeployed(target, start, artifacts);
+			target.recordDeployed(artifacts);
+			if (journal != null) {
+				journal.recordDeployed(artifacts);
+			}
+			if (ledger != null) {
+				ledger.recordDeployed(artifacts);
+			}
+			return true;
 		} catch (DeploymentException e) {
 			throw new MojoExecutionException(e.getMessage(), e);
+		} catch (IOException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+	}
+
+	private org.sonatype.aether.artifact.Artifact createArtifact(String groupId, String artifactId, String version, String type) {
+		Artifact artifact = repositorySystem.createArtifact(groupId, artifactId, version, type);
+		return RepositoryUtils.toArtifact(artifact);
+	}
+
+	private int getDeployBatchSize() {
+		return Math.max(1, deployBatchSize);
+	}
+
+	private static <T> List<List<T>> partition(List<T> list, int size) {
+		List<List<T>> partitions = new ArrayList<List<T>>();
+		for (int i = 0; i < list.size(); i += size) {
+			partitions.add(list.subList(i, Math.min(list.size(), i + size)));
+		}
+		return partitions;
+	}
+
+	/**
+	 * @return the repository given by repositoryId and url, followed by the
+	 *         additional repositories
+	 */
+	private List<DeploymentTarget> getDeploymentTargets() throws MojoExecutionException {
+		List<DeploymentTarget> deploymentTargets = new ArrayList<DeploymentTarget>();
+		deploymentTargets.add(new DeploymentTarget(getDeploymentRepository(repositoryId, url), url));
+		if (StringUtils.isNotBlank(additionalRepositories)) {
+			Set<String> ids = new HashSet<String>();
+			ids.add(repositoryId);
+			for (String repository : StringUtils.split(additionalRepositories, ",")) {
+				String[] idAndUrl = repository.trim().split("::", 2);
+				if (idAndUrl.length != 2 || StringUtils.isBlank(idAndUrl[0]) || StringUtils.isBlank(idAndUrl[1])) {
+					throw new MojoExecutionException("Invalid additional repository, expected id::url: " + repository);
+				}
+				String id = idAndUrl[0].trim();
+				if (!ids.add(id)) {
+					throw new MojoExecutionException("Repository id " + id + " is used more than once");
+				}
+				String repositoryUrl = idAndUrl[1].trim();
+				deploymentTargets.add(new DeploymentTarget(getDeploymentRepository(id, repositoryUrl), repositoryUrl));
+			}
 		}
+		return deploymentTargets;
 	}
 
-	private RemoteRepository getDeploymentRepository() throws MojoExecutionException {
+	private RemoteRepository getDeploymentRepository(String id, String repositoryUrl) throws MojoExecutionException {
 		ArtifactRepositoryLayout layout = getLayout(repositoryLayout);
 
-		ArtifactRepository deploymentRepository = repositorySystem.createArtifactRepository(repositoryId, url, layout, new ArtifactRepositoryPolicy(true,
+		ArtifactRepository deploymentRepository = repositorySystem.createArtifactRepository(id, repositoryUrl, layout, new ArtifactRepositoryPolicy(true,
 				ArtifactRepositoryPolicy.UPDATE_POLICY_ALWAYS, ArtifactRepositoryPolicy.CHECKSUM_POLICY_WARN), new ArtifactRepositoryPolicy(true,
 				ArtifactRepositoryPolicy.UPDATE_POLICY_NEVER, ArtifactRepositoryPolicy.CHECKSUM_POLICY_WARN));
 
@@ -241,9 +763,8 @@ public class DeployADFLibrariesMojo extends AbstractMojo {
 			throw new MojoExecutionException("No transfer protocol found.");
 		}
 
-		RepositorySystemSession repositorySystemSession = legacySupport.getRepositorySession();
 		RemoteRepository remoteRepository = RepositoryUtils.toRepo(deploymentRepository);
-		Authentication authentication = repositorySystemSession.getAuthenticationSelector().getAuthentication(remoteRepository);
+		Authentication authentication = repositorySession.getAuthenticationSelector().getAuthentication(remoteRepository);
 		remoteRepository.setAuthentication(authentication);
 
 		return remoteRepository;
@@ -270,50 +791,76 @@ public class DeployADFLibrariesMojo extends AbstractMojo {
 	}
 
 	/**
-	 * Deploy an artifact from a particular file.
+	 * Deploy a batch of artifacts in a single request. A failed request is
+	 * retried as a whole by the {@link DeploymentExecutor}.
 	 * 
-	 * @param source
-	 *            the file to deploy
-	 * @param artifact
-	 *            the artifact definition
-	 * @param deploymentRepository
+	 * @param artifacts
+	 *            the artifacts to deploy, each with its file set
+	 * @param remoteRepository
 	 *            the repository to deploy to
-	 * @param localRepository
-	 *            the local repository to install into
-	 * @throws ArtifactDeploymentException
-	 *             if an error occurred deploying the artifact
-	 */
-	protected void deploy(File source, Artifact artifact, RemoteRepository remoteRepository, ArtifactRepository localRepository) throws DeploymentException {
-		int retryFailedDeploymentCount = Math.max(1, Math.min(10, this.retryFailedDeploymentCount));
-		DeploymentException exception = null;
-		for (int count = 0; count < retryFailedDeploymentCount; count++) {
-			try {
-				if (count > 0) {
-					getLog().info("Retrying deployment attempt " + (count + 1) + " of " + retryFailedDeploymentCount);
-				}
-				DeployRequest deployRequest = new DeployRequest();
-				org.sonatype.aether.artifact.Artifact artifact2 = RepositoryUtils.toArtifact(artifact);
-				artifact2 = artifact2.setFile(source);
-				deployRequest.addArtifact(artifact2);
-				deployRequest.setRepository(remoteRepository);
-				deployer.deploy(legacySupport.getRepositorySession(), deployRequest);
-				exception = null;
-				break;
-			} catch (DeploymentException e) {
-				if (count + 1 < retryFailedDeploymentCount) {
-					getLog().warn("Encountered issue during deployment: " + e.getLocalizedMessage());
-					getLog().debug(e);
-				}
-				if (exception == null) {
-					exception = e;
-				}
-			}
+	 * @throws DeploymentException
+	 *             if an error occurred deploying the artifacts
+	 */
+	private void deploy(List<org.sonatype.aether.artifact.Artifact> artifacts, RemoteRepository remoteRepository) throws DeploymentException {
+		DeployRequest deployRequest = new DeployRequest();
+		for (org.sonatype.aether.artifact.Artifact artifact : artifacts) {
+			deployRequest.addArtifact(artifact);
+		}
+		deployRequest.setRepository(remoteRepository);
+		deployer.deploy(repositorySession, deployRequest);
+	}
+
+	/**
+	 * Places a batch of artifacts in a file:// repository directly, see
+	 * {@link FileRepository}.
+	 */
+	private void install(List<org.sonatype.aether.artifact.Artifact> artifacts, FileRepository fileRepository) throws IOException {
+		for (org.sonatype.aether.artifact.Artifact artifact : artifacts) {
+			fileRepository.install(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getExtension(), artifact.getFile());
+		}
+	}
+
+	/**
+	 * Records a deployment for the run and for its repository.
+	 */
+	private void recordDeployed(DeploymentTarget target, long start, List<org.sonatype.aether.artifact.Artifact> artifacts) {
+		long size = getSize(artifacts);
+		metrics.record("deploy", start, size, artifacts.size());
+		target.getMetrics().record("deploy", start, size, artifacts.size());
+		if (firstDeployRecorded.compareAndSet(false, true)) {
+			metrics.record("first-deploy", runStart, 0, 0);
+		}
+	}
+
+	private void recordFailed(DeploymentTarget target, long start, List<org.sonatype.aether.artifact.Artifact> artifacts) {
+		metrics.record("deploy-failed", start, 0, artifacts.size());
+		target.getMetrics().record("deploy-failed", start, 0, artifacts.size());
+	}
+
+	/**
+	 * @return the repository to write directly, or <code>null</code> to deploy
+	 *         through Aether
+	 */
+	private FileRepository openFileRepository(RemoteRepository remoteRepository) throws MojoExecutionException {
+		if (!"file".equals(remoteRepository.getProtocol()) || !"default".equals(repositoryLayout)) {
+			return null;
 		}
-		if (exception != null) {
-			throw exception;
+		File basedir = new File(PathUtils.basedir(remoteRepository.getUrl()));
+		try {
+			return new FileRepository(basedir, false, hardLinks, digests);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Error creating the repository " + basedir + ": " + e.getMessage(), e);
 		}
 	}
 
+	private static long getSize(List<org.sonatype.aether.artifact.Artifact> artifacts) {
+		long size = 0;
+		for (org.sonatype.aether.artifact.Artifact artifact : artifacts) {
+			size += artifact.getFile().length();
+		}
+		return size;
+	}
+
 	/**
 	 * Generates a minimal POM from the user-supplied artifact information.
 	 * 
@@ -322,41 +869,89 @@ public class DeployADFLibrariesMojo extends AbstractMojo {
 	 *             If the generation failed.
 	 */
 	private File generatePomFile(String groupId, String artifactId, String version) throws MojoExecutionException {
-		Model model = generateModel(groupId, artifactId, version);
-
-		Writer fw = null;
+		long start = System.nanoTime();
 		try {
-			File tempFile = File.createTempFile("mvndeploy", ".pom");
-			tempFile.deleteOnExit();
-
-			fw = WriterFactory.newXmlWriter(tempFile);
-			new MavenXpp3Writer().write(fw, model);
-
-			return tempFile;
+			File pomFile = jarPomGenerator.getPomFile(groupId, artifactId, version);
+			metrics.record("jar-pom", start, 0, 1);
+			return pomFile;
 		} catch (IOException e) {
-			throw new MojoExecutionException("Error writing temporary pom file: " + e.getMessage(), e);
-		} finally {
-			IOUtil.close(fw);
+			throw new MojoExecutionException("Error writing pom file: " + e.getMessage(), e);
 		}
 	}
 
 	/**
-	 * Generates a minimal model from the user-supplied artifact information.
-	 * 
-	 * @return The generated model, never <code>null</code>.
+	 * Collects the libraries and jars passed by the scan into batches, and
+	 * queues every batch for deployment as soon as it is full.
 	 */
-	private Model generateModel(String groupId, String artifactId, String version) {
-		Model model = new Model();
+	private final class PipelinedDeployment implements ScanListener {
 
-		model.setModelVersion("4.0.0");
+		private List<JarLibrary> libraries = new ArrayList<JarLibrary>();
+		private final Map<String, List<JarDef>> jarsByGroupId = new LinkedHashMap<String, List<JarDef>>();
 
-		model.setGroupId(groupId);
-		model.setArtifactId(artifactId);
-		model.setVersion(version);
-		model.setPackaging("jar");
+		@Override
+		public void libraryScanned(JarLibrary library, List<JarDef> jars) {
+			try {
+				add(library, jars);
+			} catch (MojoExecutionException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+
+		private void add(JarLibrary library, List<JarDef> jars) throws MojoExecutionException {
+			libraries.add(library);
+			if (libraries.size() >= getDeployBatchSize()) {
+				deployLibraryBatch(libraries);
+				libraries = new ArrayList<JarLibrary>();
+			}
+			for (JarDef jar : jars) {
+				if (isDeployable(jar)) {
+					String groupId;
+					try {
+						groupId = jar.getGroupId();
+					} catch (IOException e) {
+						throw new MojoExecutionException(e.getMessage(), e);
+					}
+					List<JarDef> batch = jarsByGroupId.get(groupId);
+					if (batch == null) {
+						batch = new ArrayList<JarDef>();
+						jarsByGroupId.put(groupId, batch);
+					}
+					batch.add(jar);
+					if (batch.size() >= getDeployBatchSize()) {
+						deployJarBatch(groupId, batch);
+						jarsByGroupId.remove(groupId);
+					}
+				}
+			}
+		}
 
-		model.setDescription("JDeveloper imported jar.");
+		/**
+		 * Lets every deployment queued so far finish first, so an earlier POM
+		 * of a colliding library, e.g. one being retried, cannot land after
+		 * the POM that replaces it.
+		 */
+		@Override
+		public void collidingLibrariesFollow() {
+			try {
+				flush();
+				for (DeploymentTarget target : targets) {
+					target.getExecutor().awaitIdle();
+				}
+			} catch (MojoExecutionException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
 
-		return model;
+		/**
+		 * Queues the batches that did not fill up.
+		 */
+		private void flush() throws MojoExecutionException {
+			if (!libraries.isEmpty()) {
+				deployLibraryBatch(libraries);
+				libraries = new ArrayList<JarLibrary>();
+			}
+			deployJdevLibraryJars(jarsByGroupId);
+			jarsByGroupId.clear();
+		}
 	}
 }
@@ -0,0 +1,322 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Runs deployment tasks on a bounded pool of worker threads. A single task is
+ * always executed by one thread at a time, so the artifacts it deploys keep
+ * their order (e.g. a POM before its jar). Once a task failed no new tasks are
+ * started; {@link #awaitCompletion()} reports all failures of the tasks that
+ * did run.
+ * <p>
+ * A failed task is retried as the {@link RetryPolicy} says: it goes back on
+ * the delay queue of the pool for its backoff delay, and the worker threads
+ * meanwhile run other tasks. The {@link CircuitBreaker} holds back all tasks
+ * while the repository looks overloaded.
+ * <p>
+ * At most a given number of tasks is queued, running or waiting for a retry at
+ * the same time; further tasks wait in a backlog. A producer that is faster
+ * than the deployments, such as the scan, waits in
+ * {@link #awaitRoom(List)} until one of the executors it feeds has room, so it
+ * is held back by the fastest repository instead of queueing up the whole
+ * JDeveloper home. A repository that falls behind, e.g. while its circuit
+ * breaker is open, keeps the tasks it did not start yet in its backlog and
+ * does not hold back the others. The tasks only refer to the scanned
+ * libraries and jars, not to their content.
+ * <p>
+ * When continuing on errors, a failed task does not stop the others: all
+ * tasks are run and {@link #awaitCompletion()} fails with a summary of the
+ * failed ones.
+ */
+class DeploymentExecutor {
+
+	/**
+	 * A unit of work deployed by a single thread.
+	 */
+	interface Task {
+
+		/**
+		 * @return whether the repository was contacted, <code>false</code>
+		 *         when there was nothing left to deploy
+		 */
+		boolean run() throws MojoExecutionException;
+	}
+
+	private final ScheduledExecutorService executor;
+	private final RetryPolicy retryPolicy;
+	private final CircuitBreaker circuitBreaker;
+	private final boolean continueOnError;
+	private final Log log;
+	private final List<MojoExecutionException> failures = new ArrayList<MojoExecutionException>();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final AtomicInteger tasks = new AtomicInteger();
+	private final AtomicInteger retries = new AtomicInteger();
+	private final LinkedList<Attempt> backlog = new LinkedList<Attempt>();
+	private final Object lock;
+	private final int capacity;
+	private int pending;
+	private volatile boolean failed;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of started, unfinished tasks
+	 * @param continueOnError
+	 *            whether to run all tasks, also after a task failed
+	 * @param lock
+	 *            the lock shared by all executors a producer feeds
+	 */
+	DeploymentExecutor(int threads, int capacity, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker, boolean continueOnError, Object lock,
+			Log log) {
+		this.executor = new ScheduledThreadPoolExecutor(Math.max(1, threads));
+		this.capacity = Math.max(1, capacity);
+		this.lock = lock;
+		this.retryPolicy = retryPolicy;
+		this.circuitBreaker = circuitBreaker;
+		this.continueOnError = continueOnError;
+		this.log = log;
+	}
+
+	/**
+	 * Queues a task, or puts it in the backlog when the queue is full.
+	 */
+	void execute(Task task) {
+		Attempt attempt = new Attempt(task);
+		tasks.incrementAndGet();
+		synchronized (lock) {
+			if (pending >= capacity) {
+				backlog.add(attempt);
+				return;
+			}
+			pending++;
+		}
+		executor.execute(attempt);
+	}
+
+	/**
+	 * Waits until at least one of the executors has room in its queue.
+	 * 
+	 * @param executors
+	 *            executors that share their lock
+	 * @throws MojoExecutionException
+	 *             if interrupted while waiting
+	 */
+	static void awaitRoom(List<DeploymentExecutor> executors) throws MojoExecutionException {
+		Object lock = executors.get(0).lock;
+		try {
+			synchronized (lock) {
+				while (!hasRoom(executors)) {
+					lock.wait();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while queueing deployments", e);
+		}
+	}
+
+	private static boolean hasRoom(List<DeploymentExecutor> executors) {
+		for (DeploymentExecutor executor : executors) {
+			if (executor.pending < executor.capacity) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of retries scheduled so far
+	 */
+	int getRetryCount() {
+		return retries.get();
+	}
+
+	/**
+	 * Waits until all submitted tasks finished, including their retries,
+	 * after which new tasks can still be submitted.
+	 *
+	 * @throws MojoExecutionException
+	 *             if interrupted while waiting
+	 */
+	void awaitIdle() throws MojoExecutionException {
+		try {
+			synchronized (lock) {
+				while (pending > 0) {
+					lock.wait(TimeUnit.MINUTES.toMillis(1));
+					if (pending > 0) {
+						log.debug("Waiting for " + (pending + backlog.size()) + " deployments to finish");
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while waiting for deployments to finish", e);
+		}
+	}
+
+	/**
+	 * Waits until all submitted tasks finished, including their retries.
+	 *
+	 * @throws MojoExecutionException
+	 *             if one or more tasks failed
+	 */
+	void awaitCompletion() throws MojoExecutionException {
+		try {
+			awaitIdle();
+		} catch (MojoExecutionException e) {
+			executor.shutdownNow();
+			throw e;
+		}
+		executor.shutdown();
+		synchronized (failures) {
+			if (failures.isEmpty()) {
+				return;
+			}
+			if (continueOnError) {
+				log.error("Deployment summary: " + (tasks.get() - failures.size()) + " of " + tasks.get() + " deployments succeeded, " + failures.size()
+						+ " failed:");
+				for (MojoExecutionException failure : failures) {
+					log.error("  " + failure.getMessage());
+				}
+				throw new MojoExecutionException(failures.size() + " of " + tasks.get() + " deployments failed, first failure: "
+						+ failures.get(0).getMessage(), failures.get(0));
+			}
+			if (skipped.get() > 0) {
+				log.warn(skipped.get() + " deployments were not started because of earlier failures");
+			}
+			if (failures.size() == 1) {
+				throw failures.get(0);
+			}
+			for (MojoExecutionException failure : failures) {
+				log.error(failure.getMessage());
+			}
+			MojoExecutionException first = failures.get(0);
+			throw new MojoExecutionException(failures.size() + " deployments failed, first failure: " + first.getMessage(), first);
+		}
+	}
+
+	/**
+	 * Stops the worker threads, without waiting for running tasks or starting
+	 * the backlog.
+	 */
+	void close() {
+		synchronized (lock) {
+			backlog.clear();
+		}
+		executor.shutdownNow();
+	}
+
+	private void fail(MojoExecutionException e) {
+		failed = true;
+		synchronized (failures) {
+			failures.add(e);
+		}
+	}
+
+	/**
+	 * Ends a task, starting the next task of the backlog in its place.
+	 */
+	private void done() {
+		Attempt next;
+		synchronized (lock) {
+			next = backlog.poll();
+			if (next == null) {
+				pending--;
+			}
+			lock.notifyAll();
+		}
+		if (next != null) {
+			try {
+				executor.execute(next);
+			} catch (RejectedExecutionException e) {
+				// closed meanwhile
+			}
+		}
+	}
+
+	/**
+	 * The attempts of a task, rescheduled on the pool until the task succeeded
+	 * or gave up.
+	 */
+	private final class Attempt implements Runnable {
+
+		private final Task task;
+		private int attempt = 1;
+		private MojoExecutionException lastFailure;
+		private CircuitBreaker.Permit permit;
+
+		private Attempt(Task task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			if (failed && !continueOnError) {
+				skipped.incrementAndGet();
+				done();
+				return;
+			}
+			if (circuitBreaker.isBroken()) {
+				if (lastFailure == null) {
+					fail(new MojoExecutionException("Not deployed, the repository is unavailable"));
+				} else {
+					fail(new MojoExecutionException("The repository is unavailable, gave up after " + (attempt - 1) + " attempts: " + lastFailure.getMessage(),
+							lastFailure));
+				}
+				done();
+				return;
+			}
+			permit = circuitBreaker.acquire();
+			if (permit.getWait() > 0) {
+				executor.schedule(this, permit.getWait(), TimeUnit.MILLISECONDS);
+				return;
+			}
+			try {
+				if (task.run()) {
+					circuitBreaker.onSuccess(permit);
+				} else {
+					// says nothing about the repository
+					circuitBreaker.release(permit);
+				}
+				done();
+			} catch (MojoExecutionException e) {
+				retry(e);
+			} catch (Throwable e) {
+				// also an Error ends the task, or the executor never gets idle
+				circuitBreaker.onFailure(permit, false);
+				fail(new MojoExecutionException(e.toString(), e));
+				done();
+			}
+		}
+
+		private void retry(MojoExecutionException e) {
+			lastFailure = e;
+			RetryPolicy.FailureClass failure = RetryPolicy.classify(e);
+			if (circuitBreaker.onFailure(permit, failure.isOverload())) {
+				log.warn("The repository looks overloaded, pausing all deployments for " + circuitBreaker.getCoolDownMillis() + " ms");
+			}
+			long delay = retryPolicy.getRetryDelay(failure, attempt);
+			if (delay < 0) {
+				fail(e);
+				done();
+				return;
+			}
+			log.warn("Deployment attempt " + attempt + " of " + retryPolicy.getAttempts() + " failed (" + failure + "), retrying in " + delay + " ms: "
+					+ e.getMessage());
+			log.debug(e);
+			attempt++;
+			retries.incrementAndGet();
+			executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+}
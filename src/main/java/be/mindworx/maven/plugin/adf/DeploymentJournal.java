@@ -0,0 +1,181 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.sonatype.aether.artifact.Artifact;
+
+/**
+ * An append-only record of the artifacts deployed by a run, written after
+ * every successful deployment request. Unlike the ledger, which is only saved
+ * at the end of a run, the journal survives an aborted run, so a resumed run
+ * can skip what the aborted run already deployed.
+ * <p>
+ * Every run starts with a <code># started</code> line and a run that deployed
+ * everything ends with a <code># completed</code> line. Only an unfinished run
+ * can be resumed; a completed run is followed by a new run from scratch.
+ * Every other line maps the coordinates of a deployed artifact to the size of
+ * its file and a tag of its content, a changed file is deployed again. The
+ * jars of the Middleware home are read-only, so their tag is the modification
+ * time. The POMs of the jars are named by the SHA-1 hash of their content,
+ * which is their tag. Only the library POMs, which every run writes anew, are
+ * hashed.
+ */
+class DeploymentJournal {
+
+	private static final String STARTED = "# started ";
+	private static final String COMPLETED = "# completed ";
+	private static final String SEPARATOR = ",";
+
+	private final File file;
+	private final Map<String, String> entries = new HashMap<String, String>();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final FileDigests digests;
+	private final File jarPomFolder;
+	private Writer writer;
+	private boolean resumed;
+
+	/**
+	 * @param file
+	 *            the journal file
+	 * @param resume
+	 *            whether to continue the run recorded in the file, if it was
+	 *            not completed
+	 * @param jarPomFolder
+	 *            the folder of the jar POMs, named by their SHA-1 hash
+	 */
+	DeploymentJournal(File file, boolean resume, FileDigests digests, File jarPomFolder) throws IOException {
+		this.file = file;
+		this.digests = digests;
+		this.jarPomFolder = jarPomFolder;
+		if (resume && file.exists()) {
+			read();
+		}
+		file.getParentFile().mkdirs();
+		writer = new OutputStreamWriter(new FileOutputStream(file, resumed), "UTF-8");
+		write(STARTED + now());
+	}
+
+	/**
+	 * @return whether an unfinished run was found to resume
+	 */
+	boolean isResumed() {
+		return resumed;
+	}
+
+	/**
+	 * @return the number of artifacts deployed by the resumed run
+	 */
+	int getResumedCount() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the artifacts that were not yet deployed with their current file
+	 */
+	List<Artifact> getPending(List<Artifact> artifacts) throws IOException {
+		List<Artifact> pending = new ArrayList<Artifact>(artifacts.size());
+		for (Artifact artifact : artifacts) {
+			String entry = entries.get(DeploymentLedger.getKey(artifact));
+			if (entry != null && entry.equals(getValue(artifact))) {
+				skipped.incrementAndGet();
+			} else {
+				pending.add(artifact);
+			}
+		}
+		return pending;
+	}
+
+	/**
+	 * @return the number of artifacts skipped because the resumed run already
+	 *         deployed them
+	 */
+	int getSkippedCount() {
+		return skipped.get();
+	}
+
+	void recordDeployed(List<Artifact> artifacts) throws IOException {
+		StringBuilder lines = new StringBuilder();
+		for (Artifact artifact : artifacts) {
+			lines.append(DeploymentLedger.getKey(artifact)).append('=').append(getValue(artifact)).append('\n');
+		}
+		synchronized (this) {
+			writer.write(lines.toString());
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Marks the run as completed, nothing is left to resume.
+	 */
+	synchronized void complete() throws IOException {
+		write(COMPLETED + now());
+	}
+
+	synchronized void close() {
+		IOUtil.close(writer);
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	private void read() throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(COMPLETED)) {
+					resumed = false;
+					entries.clear();
+				} else if (line.startsWith(STARTED)) {
+					resumed = true;
+				} else {
+					// a line cut off by an aborted run is simply ignored
+					int separator = line.indexOf('=');
+					if (separator > 0 && line.indexOf(SEPARATOR, separator) > 0) {
+						entries.put(line.substring(0, separator), line.substring(separator + 1));
+					}
+				}
+			}
+		} finally {
+			IOUtil.close(reader);
+		}
+	}
+
+	private void write(String line) throws IOException {
+		writer.write(line + "\n");
+		writer.flush();
+	}
+
+	private String getValue(Artifact artifact) throws IOException {
+		File source = artifact.getFile();
+		if ("jar".equals(artifact.getExtension())) {
+			return source.length() + SEPARATOR + source.lastModified();
+		}
+		if (jarPomFolder.equals(source.getParentFile())) {
+			String name = source.getName();
+			return source.length() + SEPARATOR + name.substring(0, name.length() - ".pom".length());
+		}
+		return source.length() + SEPARATOR + digests.sha1(source);
+	}
+
+	private static String now() {
+		return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date());
+	}
+
+}
@@ -0,0 +1,125 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.sonatype.aether.artifact.Artifact;
+
+/**
+ * Remembers which artifacts were successfully deployed to a repository, so a
+ * later run only deploys new or changed files.
+ * <p>
+ * Every entry maps the coordinates of an artifact to the size, last
+ * modification time and SHA-1 hash of the deployed file. A file with the same
+ * size and modification time is considered unchanged; when only the
+ * modification time differs the hash decides.
+ */
+class DeploymentLedger {
+
+	private static final String SEPARATOR = ",";
+
+	private final File file;
+	private final String description;
+	private final Properties entries = new Properties();
+	private final AtomicInteger unchanged = new AtomicInteger();
+	private final FileDigests digests;
+
+	/**
+	 * @param file
+	 *            the ledger file, read if it already exists
+	 * @param description
+	 *            the repository the ledger is kept for, stored as a comment
+	 */
+	DeploymentLedger(File file, String description, FileDigests digests) throws IOException {
+		this.file = file;
+		this.description = description;
+		this.digests = digests;
+		if (file.exists()) {
+			InputStream in = new FileInputStream(file);
+			try {
+				entries.load(in);
+			} finally {
+				IOUtil.close(in);
+			}
+		}
+	}
+
+	/**
+	 * @return the artifacts whose file was not yet deployed in its current
+	 *         state
+	 */
+	List<Artifact> getChanged(List<Artifact> artifacts) throws IOException {
+		List<Artifact> changed = new ArrayList<Artifact>(artifacts.size());
+		for (Artifact artifact : artifacts) {
+			if (isDeployed(artifact)) {
+				unchanged.incrementAndGet();
+			} else {
+				changed.add(artifact);
+			}
+		}
+		return changed;
+	}
+
+	void recordDeployed(List<Artifact> artifacts) throws IOException {
+		for (Artifact artifact : artifacts) {
+			File source = artifact.getFile();
+			entries.setProperty(getKey(artifact), source.length() + SEPARATOR + source.lastModified() + SEPARATOR + digests.sha1(source));
+		}
+	}
+
+	/**
+	 * @return the number of artifacts found unchanged so far
+	 */
+	int getUnchangedCount() {
+		return unchanged.get();
+	}
+
+	void save() throws IOException {
+		file.getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			entries.store(out, "Artifacts deployed to " + description);
+		} finally {
+			IOUtil.close(out);
+		}
+	}
+
+	/**
+	 * @return whether the file of the artifact was deployed in its current
+	 *         state
+	 */
+	boolean isDeployed(Artifact artifact) throws IOException {
+		String key = getKey(artifact);
+		String entry = entries.getProperty(key);
+		if (entry == null) {
+			return false;
+		}
+		String[] fields = entry.split(SEPARATOR);
+		File source = artifact.getFile();
+		if (fields.length != 3 || Long.parseLong(fields[0]) != source.length()) {
+			return false;
+		}
+		if (Long.parseLong(fields[1]) == source.lastModified()) {
+			return true;
+		}
+		if (fields[2].equals(digests.sha1(source))) {
+			entries.setProperty(key, fields[0] + SEPARATOR + source.lastModified() + SEPARATOR + fields[2]);
+			return true;
+		}
+		return false;
+	}
+
+	static String getKey(Artifact artifact) {
+		return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getExtension() + ":" + artifact.getVersion();
+	}
+
+}
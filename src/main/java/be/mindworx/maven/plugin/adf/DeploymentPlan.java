@@ -0,0 +1,163 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.RemoteRepository;
+
+/**
+ * What a deployment would do, written as JSON instead of deploying: every
+ * artifact with its file size and whether the ledger or the remote repository
+ * already has it, and the bytes and time needed to deploy the rest.
+ */
+class DeploymentPlan {
+
+	private final DeploymentLedger ledger;
+	private final RemoteChecksums remoteChecksums;
+	private final List<Entry> entries = new ArrayList<Entry>();
+	private int requests;
+	private long totalBytes;
+	private long deployBytes;
+	private int deployCount;
+
+	/**
+	 * @param ledger
+	 *            the ledger of an incremental deployment, or <code>null</code>
+	 * @param remoteChecksums
+	 *            the prefetched remote checksums, or <code>null</code>
+	 */
+	DeploymentPlan(DeploymentLedger ledger, RemoteChecksums remoteChecksums) {
+		this.ledger = ledger;
+		this.remoteChecksums = remoteChecksums;
+	}
+
+	/**
+	 * Adds the artifacts of a single deployment request.
+	 */
+	void addRequest(List<Artifact> artifacts) throws IOException {
+		boolean deploys = false;
+		for (Artifact artifact : artifacts) {
+			Entry entry = new Entry(artifact);
+			File file = artifact.getFile();
+			entry.size = file.length();
+			if (ledger != null) {
+				entry.ledger = ledger.isDeployed(artifact) ? "unchanged" : "changed";
+			}
+			if (remoteChecksums != null) {
+				if (remoteChecksums.isUnchanged(artifact)) {
+					entry.remote = "unchanged";
+				} else {
+					entry.remote = remoteChecksums.isPresent(artifact) ? "changed" : "absent";
+				}
+			}
+			entry.deploy = !"unchanged".equals(entry.ledger) && !"unchanged".equals(entry.remote);
+			entries.add(entry);
+			totalBytes += entry.size;
+			if (entry.deploy) {
+				deploys = true;
+				deployCount++;
+				deployBytes += entry.size;
+			}
+		}
+		if (deploys) {
+			requests++;
+		}
+	}
+
+	int getDeployCount() {
+		return deployCount;
+	}
+
+	long getDeployBytes() {
+		return deployBytes;
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of uploads that would run at the same time: one per
+	 *         thread, but no more than there are requests
+	 */
+	int getConcurrency(int threads) {
+		return Math.max(1, Math.min(threads, requests));
+	}
+
+	/**
+	 * @param bytesPerSecond
+	 *            the throughput of a single upload
+	 * @return the estimated upload time in seconds, with the requests spread
+	 *         over the threads
+	 */
+	double getEstimatedSeconds(long bytesPerSecond, int threads) {
+		return bytesPerSecond > 0 ? (double) deployBytes / bytesPerSecond / getConcurrency(threads) : Double.NaN;
+	}
+
+	void write(File file, RemoteRepository repository, long bytesPerSecond, int threads, int batchSize) throws IOException {
+		JsonWriter json = new JsonWriter(file);
+		try {
+			json.beginObject();
+			json.property("created", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date()));
+			json.name("repository").beginObject();
+			json.property("id", repository.getId());
+			json.property("url", repository.getUrl());
+			json.endObject();
+			json.name("settings").beginObject();
+			json.property("incremental", ledger != null);
+			json.property("skipExisting", remoteChecksums != null);
+			json.property("deployThreads", threads);
+			json.property("deployBatchSize", batchSize);
+			json.property("throughputBytesPerSecond", bytesPerSecond);
+			json.endObject();
+			json.name("summary").beginObject();
+			json.property("artifacts", entries.size());
+			json.property("totalBytes", totalBytes);
+			json.property("deployArtifacts", deployCount);
+			json.property("deployBytes", deployBytes);
+			json.property("skippedArtifacts", entries.size() - deployCount);
+			json.property("deployRequests", requests);
+			json.property("concurrentUploads", getConcurrency(threads));
+			json.property("estimatedSeconds", getEstimatedSeconds(bytesPerSecond, threads));
+			json.endObject();
+			json.name("artifacts").beginArray();
+			for (Entry entry : entries) {
+				json.beginObject();
+				json.property("groupId", entry.artifact.getGroupId());
+				json.property("artifactId", entry.artifact.getArtifactId());
+				json.property("version", entry.artifact.getVersion());
+				json.property("extension", entry.artifact.getExtension());
+				json.property("file", entry.artifact.getFile().getAbsolutePath());
+				json.property("size", entry.size);
+				json.property("ledger", entry.ledger);
+				json.property("remote", entry.remote);
+				json.property("deploy", entry.deploy);
+				json.endObject();
+			}
+			json.endArray();
+			json.endObject();
+		} finally {
+			json.close();
+		}
+	}
+
+	private static final class Entry {
+
+		private final Artifact artifact;
+		private long size;
+		// null when not checked
+		private String ledger;
+		private String remote;
+		private boolean deploy;
+
+		private Entry(Artifact artifact) {
+			this.artifact = artifact;
+		}
+	}
+
+}
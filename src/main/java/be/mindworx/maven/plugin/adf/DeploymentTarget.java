@@ -0,0 +1,156 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.RemoteRepository;
+
+import com.googlecode.mavenadf.Metrics;
+
+/**
+ * A repository deployed to, with everything that is kept per repository: the
+ * ledger, the journal, the remote checksums, the folder of a file://
+ * repository, the executor with its own retries, circuit breaker and backlog,
+ * so a failing or slow repository does not pause the others, and the progress
+ * and metrics of the deployment.
+ */
+class DeploymentTarget {
+
+	private final RemoteRepository repository;
+	private final String url;
+	private final AtomicInteger deployedArtifacts = new AtomicInteger();
+	private final AtomicLong deployedBytes = new AtomicLong();
+	private final Metrics metrics = new Metrics();
+	private DeploymentLedger ledger;
+	private DeploymentJournal journal;
+	private RemoteChecksums remoteChecksums;
+	private FileRepository fileRepository;
+	private DeploymentExecutor executor;
+	private CircuitBreaker circuitBreaker;
+	private MojoExecutionException failure;
+
+	/**
+	 * @param url
+	 *            the URL as configured, which names the work files of the
+	 *            repository
+	 */
+	DeploymentTarget(RemoteRepository repository, String url) {
+		this.repository = repository;
+		this.url = url;
+	}
+
+	RemoteRepository getRepository() {
+		return repository;
+	}
+
+	String getId() {
+		return repository.getId();
+	}
+
+	/**
+	 * @return the name of a work file kept per repository
+	 */
+	String getFileName(String prefix, String extension) {
+		return prefix + "-" + getId().replaceAll("[^\\w.-]", "_") + "-" + Integer.toHexString(url.hashCode()) + "." + extension;
+	}
+
+	/**
+	 * @return the ledger of an incremental deployment, or <code>null</code>
+	 */
+	DeploymentLedger getLedger() {
+		return ledger;
+	}
+
+	void setLedger(DeploymentLedger ledger) {
+		this.ledger = ledger;
+	}
+
+	/**
+	 * @return the journal of the run, or <code>null</code> for a dry run
+	 */
+	DeploymentJournal getJournal() {
+		return journal;
+	}
+
+	void setJournal(DeploymentJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * @return the prefetched remote checksums, or <code>null</code>
+	 */
+	RemoteChecksums getRemoteChecksums() {
+		return remoteChecksums;
+	}
+
+	void setRemoteChecksums(RemoteChecksums remoteChecksums) {
+		this.remoteChecksums = remoteChecksums;
+	}
+
+	/**
+	 * @return the file:// repository written directly, or <code>null</code>
+	 */
+	FileRepository getFileRepository() {
+		return fileRepository;
+	}
+
+	void setFileRepository(FileRepository fileRepository) {
+		this.fileRepository = fileRepository;
+	}
+
+	DeploymentExecutor getExecutor() {
+		return executor;
+	}
+
+	CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	void setExecutor(DeploymentExecutor executor, CircuitBreaker circuitBreaker) {
+		this.executor = executor;
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	void recordDeployed(List<Artifact> artifacts) {
+		for (Artifact artifact : artifacts) {
+			deployedArtifacts.incrementAndGet();
+			deployedBytes.addAndGet(artifact.getFile().length());
+		}
+	}
+
+	/**
+	 * @return the metrics of the phases that concern this repository only
+	 */
+	Metrics getMetrics() {
+		return metrics;
+	}
+
+	int getDeployedArtifacts() {
+		return deployedArtifacts.get();
+	}
+
+	long getDeployedBytes() {
+		return deployedBytes.get();
+	}
+
+	/**
+	 * @return why the deployment to this repository failed, or
+	 *         <code>null</code>
+	 */
+	MojoExecutionException getFailure() {
+		return failure;
+	}
+
+	void setFailure(MojoExecutionException failure) {
+		this.failure = failure;
+	}
+
+	@Override
+	public String toString() {
+		return getId() + " (" + repository.getUrl() + ")";
+	}
+
+}
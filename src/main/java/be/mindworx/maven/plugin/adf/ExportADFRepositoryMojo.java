@@ -0,0 +1,84 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import com.googlecode.mavenadf.JarLoader;
+
+/**
+ * Scans a JDeveloper installation folder for ADF libraries and writes them as
+ * a complete Maven repository, to a folder or to a single zip or tar archive
+ * that a repository manager can import at once. Nothing is deployed, so this
+ * also works offline, e.g. to seed a repository in an air-gapped environment.
+ * 
+ * @goal export-adf
+ * @phase package
+ * @inheritByDefault true
+ */
+public class ExportADFRepositoryMojo extends AbstractADFMojo {
+
+	/**
+	 * The folder or archive to write the repository to. The archive formats
+	 * add their extension when it is missing.
+	 * 
+	 * @parameter expression="${exportFile}"
+	 *            default-value="${project.build.directory}/adf-repository"
+	 * @required
+	 */
+	private File exportFile;
+
+	/**
+	 * How to write the repository: <i>directory</i>, <i>zip</i> or
+	 * <i>tar</i>.
+	 * 
+	 * @parameter expression="${exportFormat}" default-value="directory"
+	 */
+	private String exportFormat;
+
+	/**
+	 * Number of threads used to write the repository. A value of 0 or less
+	 * uses one thread per available processor. An archive is always written
+	 * by a single thread; for a zip archive the others compute the CRC of the
+	 * jars shortly ahead of it.
+	 * 
+	 * @parameter expression="${exportThreads}" default-value="0"
+	 */
+	private int exportThreads;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		long start = System.nanoTime();
+		RepositoryBundle.Format format = getFormat();
+		File workFolder = getWorkFolder();
+		JarLoader jarLoader = createJarLoader(workFolder);
+		int threads = exportThreads > 0 ? exportThreads : Runtime.getRuntime().availableProcessors();
+		RepositoryBundle bundle = openBundle(format.getFile(exportFile), format, threads, new FileDigests(jarLoader));
+		writeRepository(jarLoader, bundle);
+		jarLoader.writeMavenDependencyManagementFile();
+		getLog().info(
+				"Exported " + bundle.getArtifactCount() + " artifacts (" + bundle.getBytes() / 1024 + " KB) to " + bundle.getOutput() + " in "
+						+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+	}
+
+	private RepositoryBundle.Format getFormat() throws MojoExecutionException {
+		try {
+			return RepositoryBundle.Format.valueOf(exportFormat.toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException("Invalid export format, expected directory, zip or tar: " + exportFormat);
+		}
+	}
+
+	private RepositoryBundle openBundle(File output, RepositoryBundle.Format format, int threads, FileDigests digests) throws MojoExecutionException {
+		try {
+			return new RepositoryBundle(output, format, threads, digests);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Error creating the repository " + output + ": " + e.getMessage(), e);
+		}
+	}
+
+}
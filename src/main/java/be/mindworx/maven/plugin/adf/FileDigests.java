@@ -0,0 +1,33 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.googlecode.mavenadf.FileDigest;
+import com.googlecode.mavenadf.JarLoader;
+
+/**
+ * Content hashes of deployed files. The hashes are shared with the scan, so
+ * each file is read at most once per run, also when the library POMs, the
+ * ledger and the remote checksums all need its hash.
+ */
+final class FileDigests {
+
+	private final JarLoader jarLoader;
+
+	FileDigests(JarLoader jarLoader) {
+		this.jarLoader = jarLoader;
+	}
+
+	FileDigest get(File source) throws IOException {
+		return jarLoader.getDigest(source);
+	}
+
+	/**
+	 * @return the lowercase hexadecimal SHA-1 hash of the file content
+	 */
+	String sha1(File source) throws IOException {
+		return get(source).getSha1();
+	}
+
+}
@@ -0,0 +1,346 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.artifact.repository.metadata.Metadata;
+
+import com.googlecode.mavenadf.FileDigest;
+
+/**
+ * A repository in a folder, in the default layout, written directly instead
+ * of through Aether and Wagon: a file:// repository, or the local repository.
+ * Thread safe, artifacts can be installed by several threads at once.
+ * <p>
+ * Jars are placed with a hard link when asked and the file system allows it,
+ * otherwise they are copied with {@link FileChannel#transferTo}. A linked jar
+ * shares its content with the jar in the Middleware home. POMs are always
+ * copied: they are generated in the work folder, which the next run
+ * rewrites. An artifact is first placed under a temporary name in its folder
+ * and then renamed over the file already there, so an existing file, which
+ * may be a link to a jar in the Middleware home, is never written to.
+ * <p>
+ * A remote repository gets MD5 and SHA-1 checksum files and a
+ * maven-metadata.xml per artifactId. The local repository gets a
+ * maven-metadata-local.xml and a _maven.repositories file that marks the
+ * artifacts as installed locally, as Maven writes them on install.
+ */
+class FileRepository {
+
+	private static final Method CREATE_LINK;
+	private static final Method TO_PATH;
+
+	static {
+		// Files.createLink(Path, Path) needs Java 7, the plugin still runs on Java 6
+		Method createLink = null;
+		Method toPath = null;
+		try {
+			Class<?> path = Class.forName("java.nio.file.Path");
+			createLink = Class.forName("java.nio.file.Files").getMethod("createLink", path, path);
+			toPath = File.class.getMethod("toPath");
+		} catch (ClassNotFoundException e) {
+			// before Java 7 jars are always copied
+		} catch (NoSuchMethodException e) {
+			// before Java 7 jars are always copied
+		}
+		CREATE_LINK = createLink;
+		TO_PATH = toPath;
+	}
+
+	private final File basedir;
+	private final boolean local;
+	private final FileDigests digests;
+	private final RepositoryMetadata metadata = new RepositoryMetadata();
+	private final Map<File, Set<String>> installedFiles = new HashMap<File, Set<String>>();
+	private final AtomicInteger linkedCount = new AtomicInteger();
+	private final AtomicInteger copiedCount = new AtomicInteger();
+	private final AtomicLong copiedBytes = new AtomicLong();
+	private volatile boolean links;
+
+	/**
+	 * @param local
+	 *            whether this is the local repository
+	 * @param links
+	 *            whether to place jars with hard links
+	 */
+	FileRepository(File basedir, boolean local, boolean links, FileDigests digests) throws IOException {
+		this.basedir = basedir;
+		this.local = local;
+		this.links = links && CREATE_LINK != null;
+		this.digests = digests;
+		mkdirs(basedir);
+	}
+
+	File getBasedir() {
+		return basedir;
+	}
+
+	/**
+	 * @return the path of an artifact in the default layout, relative to the
+	 *         repository root
+	 */
+	static String getPath(String groupId, String artifactId, String version, String extension) {
+		return groupId.replace('.', '/') + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + "." + extension;
+	}
+
+	/**
+	 * Places an artifact, replacing the file that is already there. Only a
+	 * remote repository reads the artifact to hash it, for its checksum
+	 * files.
+	 * 
+	 * @return the size of the artifact
+	 */
+	long install(String groupId, String artifactId, String version, String extension, File file) throws IOException {
+		String path = getPath(groupId, artifactId, version, extension);
+		long length = file.length();
+		File target = new File(basedir, path);
+		mkdirs(target.getParentFile());
+		File temp = new File(target.getParentFile(), target.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		if (temp.exists() && !temp.delete()) {
+			throw new IOException("Cannot replace " + temp);
+		}
+		if ("jar".equals(extension) && links && link(file, temp)) {
+			linkedCount.incrementAndGet();
+		} else {
+			copy(file, length, temp);
+			temp.setLastModified(file.lastModified());
+			copiedCount.incrementAndGet();
+			copiedBytes.addAndGet(length);
+		}
+		replace(temp, target);
+		if (local) {
+			synchronized (installedFiles) {
+				Set<String> names = installedFiles.get(target.getParentFile());
+				if (names == null) {
+					names = new TreeSet<String>();
+					installedFiles.put(target.getParentFile(), names);
+				}
+				names.add(target.getName());
+			}
+		} else {
+			FileDigest digest = digests.get(file);
+			writeChecksums(path, digest.getMd5(), digest.getSha1());
+		}
+		metadata.addVersion(groupId, artifactId, version);
+		return length;
+	}
+
+	/**
+	 * Adds a version to the metadata without installing it, for an artifact
+	 * that is already in the repository.
+	 */
+	void addVersion(String groupId, String artifactId, String version) {
+		metadata.addVersion(groupId, artifactId, version);
+	}
+
+	/**
+	 * Writes the metadata of all installed artifacts, keeping the versions
+	 * that were already in the repository.
+	 */
+	void writeMetadata() throws IOException {
+		Date now = new Date();
+		for (Metadata artifactMetadata : metadata.getMetadata()) {
+			String path = RepositoryMetadata.getPath(artifactMetadata, local ? "maven-metadata-local.xml" : "maven-metadata.xml");
+			File file = new File(basedir, path);
+			if (file.isFile()) {
+				RepositoryMetadata.merge(artifactMetadata, file);
+			}
+			byte[] content = RepositoryMetadata.toXml(artifactMetadata, now);
+			write(file, content);
+			if (!local) {
+				writeChecksums(path, hash("MD5", content), hash("SHA-1", content));
+			}
+		}
+		synchronized (installedFiles) {
+			for (Map.Entry<File, Set<String>> folder : installedFiles.entrySet()) {
+				writeInstalledFiles(folder.getKey(), folder.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return the number of jars placed with a hard link
+	 */
+	int getLinkedCount() {
+		return linkedCount.get();
+	}
+
+	int getCopiedCount() {
+		return copiedCount.get();
+	}
+
+	long getCopiedBytes() {
+		return copiedBytes.get();
+	}
+
+	/**
+	 * Marks the files as installed locally, which Maven 3 records in the
+	 * _maven.repositories file of the version folder.
+	 */
+	private static void writeInstalledFiles(File folder, Set<String> names) throws IOException {
+		File file = new File(folder, "_maven.repositories");
+		Properties repositories = new Properties();
+		if (file.isFile()) {
+			InputStream in = new FileInputStream(file);
+			try {
+				repositories.load(in);
+			} finally {
+				in.close();
+			}
+		}
+		for (String name : names) {
+			repositories.setProperty(name + ">", "");
+		}
+		OutputStream out = new FileOutputStream(file);
+		try {
+			repositories.store(out, "NOTE: This is an internal implementation file, its format can be changed without prior notice.");
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeChecksums(String path, String md5, String sha1) throws IOException {
+		write(new File(basedir, path + ".md5"), md5.getBytes("US-ASCII"));
+		write(new File(basedir, path + ".sha1"), sha1.getBytes("US-ASCII"));
+	}
+
+	/**
+	 * Creates a hard link. When the file system does not support hard links,
+	 * e.g. because the Middleware home is on another file system, no link is
+	 * tried anymore. Other errors only concern this file.
+	 * 
+	 * @return whether the link was created
+	 */
+	private boolean link(File existing, File link) {
+		try {
+			CREATE_LINK.invoke(null, TO_PATH.invoke(link), TO_PATH.invoke(existing));
+			return true;
+		} catch (InvocationTargetException e) {
+			if (isUnsupported(e.getCause())) {
+				links = false;
+			}
+			return false;
+		} catch (IllegalAccessException e) {
+			links = false;
+			return false;
+		}
+	}
+
+	/**
+	 * @return whether linking failed for all files alike: the file system
+	 *         does not support hard links or does not allow them here, or
+	 *         the files are on different file systems. These are reported
+	 *         as a plain FileSystemException, the errors that concern a
+	 *         single file, such as FileAlreadyExistsException, as one of its
+	 *         subclasses.
+	 */
+	private static boolean isUnsupported(Throwable cause) {
+		return cause instanceof UnsupportedOperationException || cause.getClass().getName().equals("java.nio.file.FileSystemException");
+	}
+
+	/**
+	 * Renames a file over another, also where the file system does not
+	 * rename over an existing file.
+	 */
+	private static void replace(File file, File target) throws IOException {
+		if (file.renameTo(target)) {
+			// a rename between two links to the same file leaves both in place
+			file.delete();
+			return;
+		}
+		target.delete();
+		if (!file.renameTo(target)) {
+			file.delete();
+			throw new IOException("Cannot replace " + target);
+		}
+	}
+
+	private static void copy(File source, long length, File target) throws IOException {
+		FileOutputStream out = new FileOutputStream(target);
+		try {
+			transfer(source, length, out.getChannel());
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Copies the first bytes of a file with {@link FileChannel#transferTo},
+	 * which lets the operating system copy the file without passing it
+	 * through the heap when the target is a file.
+	 */
+	static void transfer(File source, long length, WritableByteChannel target) throws IOException {
+		FileInputStream in = new FileInputStream(source);
+		try {
+			FileChannel channel = in.getChannel();
+			long position = 0;
+			while (position < length) {
+				long transferred = channel.transferTo(position, length - position, target);
+				if (transferred <= 0) {
+					throw new IOException(source + " changed while it was written");
+				}
+				position += transferred;
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	static void write(WritableByteChannel channel, byte[] content) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(content);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static void write(File file, byte[] content) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Creates a folder with its parents; unlike {@link File#mkdirs()} safe when
+	 * other threads create the same parents at the same time.
+	 */
+	static void mkdirs(File dir) throws IOException {
+		if (dir.isDirectory()) {
+			return;
+		}
+		mkdirs(dir.getParentFile());
+		if (!dir.mkdir() && !dir.isDirectory()) {
+			throw new IOException("Cannot create folder " + dir);
+		}
+	}
+
+	static String hash(String algorithm, byte[] content) {
+		try {
+			return FileDigest.toHex(MessageDigest.getInstance(algorithm).digest(content));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(algorithm + " is not supported", e);
+		}
+	}
+
+}
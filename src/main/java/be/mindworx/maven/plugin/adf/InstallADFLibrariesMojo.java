@@ -0,0 +1,71 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import com.googlecode.mavenadf.JarLoader;
+
+/**
+ * Scans a JDeveloper installation folder for ADF libraries and installs them
+ * in the local repository, e.g. to populate the local repository of a build
+ * agent without going through a remote repository. The artifacts are written
+ * directly, the jars with hard links where the file system allows it.
+ * 
+ * @goal install-adf
+ * @phase install
+ * @inheritByDefault true
+ */
+public class InstallADFLibrariesMojo extends AbstractADFMojo {
+
+	/**
+	 * @parameter default-value="${localRepository}"
+	 * @required
+	 * @readonly
+	 */
+	private ArtifactRepository localRepository;
+
+	/**
+	 * Place the jars with hard links to the jars in the JDeveloper home
+	 * instead of copying them, when the file system allows it and Maven runs
+	 * on Java 7 or later. A linked jar shares its content with the jar in the
+	 * JDeveloper home: a jar patched in place changes in the repository too.
+	 * 
+	 * @parameter expression="${hardLinks}" default-value="true"
+	 */
+	private boolean hardLinks;
+
+	/**
+	 * Number of threads used to install the artifacts. A value of 0 or less
+	 * uses one thread per available processor.
+	 * 
+	 * @parameter expression="${installThreads}" default-value="0"
+	 */
+	private int installThreads;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		long start = System.nanoTime();
+		JarLoader jarLoader = createJarLoader(getWorkFolder());
+		File basedir = new File(localRepository.getBasedir());
+		FileRepository repository;
+		try {
+			repository = new FileRepository(basedir, true, hardLinks, new FileDigests(jarLoader));
+		} catch (IOException e) {
+			throw new MojoExecutionException("Error creating the repository " + basedir + ": " + e.getMessage(), e);
+		}
+		int threads = installThreads > 0 ? installThreads : Runtime.getRuntime().availableProcessors();
+		RepositoryBundle bundle = new RepositoryBundle(repository, threads);
+		writeRepository(jarLoader, bundle);
+		jarLoader.writeMavenDependencyManagementFile();
+		getLog().info(
+				"Installed " + bundle.getArtifactCount() + " artifacts (" + bundle.getBytes() / 1024 + " KB) in " + basedir + " in "
+						+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms: linked " + repository.getLinkedCount() + " jars, copied "
+						+ repository.getCopiedCount() + " files (" + repository.getCopiedBytes() / 1024 + " KB)");
+	}
+
+}
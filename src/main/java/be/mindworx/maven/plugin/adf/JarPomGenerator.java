@@ -0,0 +1,170 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.codehaus.plexus.util.IOUtil;
+
+import com.googlecode.mavenadf.FileDigest;
+
+/**
+ * Writes the POMs deployed with the jars of the JDeveloper home. These POMs
+ * only differ in their coordinates, so {@link MavenXpp3Writer} renders a
+ * template once and the coordinates are filled in per jar.
+ * <p>
+ * Each POM is stored in the work folder under the SHA-1 hash of its content.
+ * An unchanged POM is therefore written only once, also across runs, and its
+ * file keeps the same modification time for the deployment ledger.
+ */
+class JarPomGenerator {
+
+	private static final String GROUP_ID = "@groupId@";
+	private static final String ARTIFACT_ID = "@artifactId@";
+	private static final String VERSION = "@version@";
+	private static final String ENCODING = "UTF-8";
+
+	private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+
+		@Override
+		protected Buffers initialValue() {
+			return new Buffers();
+		}
+	};
+
+	private final File folder;
+	private final byte[][] template;
+	private final Set<String> written = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	JarPomGenerator(File folder) throws IOException {
+		this.folder = folder;
+		String pom = render(GROUP_ID, ARTIFACT_ID, VERSION);
+		int groupId = pom.indexOf(GROUP_ID);
+		int artifactId = pom.indexOf(ARTIFACT_ID, groupId);
+		int version = pom.indexOf(VERSION, artifactId);
+		if (groupId < 0 || artifactId < 0 || version < 0) {
+			throw new IllegalStateException("Unexpected pom layout: " + pom);
+		}
+		this.template = new byte[][] { pom.substring(0, groupId).getBytes(ENCODING),
+				pom.substring(groupId + GROUP_ID.length(), artifactId).getBytes(ENCODING),
+				pom.substring(artifactId + ARTIFACT_ID.length(), version).getBytes(ENCODING),
+				pom.substring(version + VERSION.length()).getBytes(ENCODING) };
+	}
+
+	/**
+	 * @return the folder the POMs are written to
+	 */
+	File getFolder() {
+		return folder;
+	}
+
+	/**
+	 * @return the POM file of a jar
+	 */
+	File getPomFile(String groupId, String artifactId, String version) throws IOException {
+		Buffers buffers = BUFFERS.get();
+		ByteArrayOutputStream pom = buffers.pom;
+		pom.reset();
+		if (isPlain(groupId) && isPlain(artifactId) && isPlain(version)) {
+			pom.write(template[0]);
+			pom.write(groupId.getBytes(ENCODING));
+			pom.write(template[1]);
+			pom.write(artifactId.getBytes(ENCODING));
+			pom.write(template[2]);
+			pom.write(version.getBytes(ENCODING));
+			pom.write(template[3]);
+		} else {
+			// let the writer escape the coordinates
+			pom.write(render(groupId, artifactId, version).getBytes(ENCODING));
+		}
+
+		buffers.digest.reset();
+		byte[] content = pom.toByteArray();
+		String hash = FileDigest.toHex(buffers.digest.digest(content));
+		File file = new File(folder, hash + ".pom");
+		if (!written.contains(hash)) {
+			if (!file.isFile() || file.length() != content.length) {
+				write(file, content);
+			}
+			written.add(hash);
+		}
+		return file;
+	}
+
+	/**
+	 * Writes to a temporary file first, so a concurrent deployment of the same
+	 * POM never reads a partial file.
+	 */
+	private void write(File file, byte[] content) throws IOException {
+		folder.mkdirs();
+		File temp = new File(folder, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		OutputStream out = new FileOutputStream(temp);
+		try {
+			out.write(content);
+		} finally {
+			IOUtil.close(out);
+		}
+		if (!temp.renameTo(file)) {
+			// written by another thread in the meantime, with the same content
+			temp.delete();
+			if (!file.isFile()) {
+				throw new IOException("Cannot write " + file);
+			}
+		}
+	}
+
+	private static String render(String groupId, String artifactId, String version) throws IOException {
+		Model model = new Model();
+
+		model.setModelVersion("4.0.0");
+
+		model.setGroupId(groupId);
+		model.setArtifactId(artifactId);
+		model.setVersion(version);
+		model.setPackaging("jar");
+
+		model.setDescription("JDeveloper imported jar.");
+
+		StringWriter writer = new StringWriter();
+		new MavenXpp3Writer().write(writer, model);
+		return writer.toString();
+	}
+
+	/**
+	 * @return whether the value is written as is, without escaping
+	 */
+	private static boolean isPlain(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x20 || c > 0x7e || c == '&' || c == '<' || c == '>' || c == '"' || c == '\'') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final class Buffers {
+
+		private final ByteArrayOutputStream pom = new ByteArrayOutputStream(1024);
+		private final MessageDigest digest;
+
+		private Buffers() {
+			try {
+				digest = MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,173 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming writer for the JSON reports in the deploy-adf work
+ * folder, indented with two spaces.
+ */
+class JsonWriter {
+
+	private final Writer out;
+	// per open object or array: whether it has no members yet
+	private final List<Boolean> empty = new ArrayList<Boolean>();
+	private boolean afterName;
+
+	JsonWriter(File file) throws IOException {
+		file.getParentFile().mkdirs();
+		this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+	}
+
+	JsonWriter beginObject() throws IOException {
+		return open('{');
+	}
+
+	JsonWriter endObject() throws IOException {
+		return close('}');
+	}
+
+	JsonWriter beginArray() throws IOException {
+		return open('[');
+	}
+
+	JsonWriter endArray() throws IOException {
+		return close(']');
+	}
+
+	JsonWriter name(String name) throws IOException {
+		separate();
+		string(name);
+		out.write(": ");
+		afterName = true;
+		return this;
+	}
+
+	JsonWriter value(String value) throws IOException {
+		separate();
+		if (value == null) {
+			out.write("null");
+		} else {
+			string(value);
+		}
+		return this;
+	}
+
+	JsonWriter value(long value) throws IOException {
+		separate();
+		out.write(Long.toString(value));
+		return this;
+	}
+
+	JsonWriter value(double value) throws IOException {
+		separate();
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			out.write("null");
+		} else {
+			out.write(Double.toString(value));
+		}
+		return this;
+	}
+
+	JsonWriter value(boolean value) throws IOException {
+		separate();
+		out.write(Boolean.toString(value));
+		return this;
+	}
+
+	JsonWriter property(String name, String value) throws IOException {
+		return name(name).value(value);
+	}
+
+	JsonWriter property(String name, long value) throws IOException {
+		return name(name).value(value);
+	}
+
+	JsonWriter property(String name, double value) throws IOException {
+		return name(name).value(value);
+	}
+
+	JsonWriter property(String name, boolean value) throws IOException {
+		return name(name).value(value);
+	}
+
+	void close() throws IOException {
+		out.write('\n');
+		out.close();
+	}
+
+	private JsonWriter open(char bracket) throws IOException {
+		separate();
+		out.write(bracket);
+		empty.add(Boolean.TRUE);
+		return this;
+	}
+
+	private JsonWriter close(char bracket) throws IOException {
+		boolean wasEmpty = empty.remove(empty.size() - 1);
+		if (!wasEmpty) {
+			newLine();
+		}
+		out.write(bracket);
+		return this;
+	}
+
+	private void separate() throws IOException {
+		if (afterName) {
+			afterName = false;
+			return;
+		}
+		if (!empty.isEmpty()) {
+			if (!empty.get(empty.size() - 1)) {
+				out.write(',');
+			}
+			empty.set(empty.size() - 1, Boolean.FALSE);
+			newLine();
+		}
+	}
+
+	private void newLine() throws IOException {
+		out.write('\n');
+		for (int i = 0; i < empty.size(); i++) {
+			out.write("  ");
+		}
+	}
+
+	private void string(String value) throws IOException {
+		out.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.write(String.format("\\u%04x", (int) c));
+				} else {
+					out.write(c);
+				}
+			}
+		}
+		out.write('"');
+	}
+
+}
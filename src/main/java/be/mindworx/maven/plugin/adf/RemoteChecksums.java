@@ -0,0 +1,179 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.Base64;
+import org.codehaus.plexus.util.IOUtil;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.Authentication;
+import org.sonatype.aether.repository.RemoteRepository;
+
+/**
+ * The SHA-1 checksums a remote repository already holds for the artifacts to
+ * deploy. They are fetched up front in parallel, so artifacts that are already
+ * present with the same content can be skipped.
+ * <p>
+ * Checksums are read straight from the repository URL, which limits this to
+ * <i>file</i>, <i>http</i> and <i>https</i> repositories with the default
+ * layout.
+ */
+class RemoteChecksums {
+
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final int READ_TIMEOUT = 30000;
+
+	private final RemoteRepository repository;
+	private final Log log;
+	private final Map<String, String> checksums = new ConcurrentHashMap<String, String>();
+	private final AtomicInteger existing = new AtomicInteger();
+	private final FileDigests digests;
+
+	RemoteChecksums(RemoteRepository repository, Log log, FileDigests digests) {
+		this.repository = repository;
+		this.log = log;
+		this.digests = digests;
+	}
+
+	static boolean isSupported(RemoteRepository repository) {
+		String protocol = repository.getProtocol();
+		return "default".equals(repository.getContentType())
+				&& ("file".equals(protocol) || "http".equals(protocol) || "https".equals(protocol));
+	}
+
+	/**
+	 * Fetches the remote checksums of the given artifacts. Artifacts that are
+	 * missing or cannot be read are simply deployed later on.
+	 */
+	void prefetch(List<Artifact> artifacts, int threads) throws MojoExecutionException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			for (final Artifact artifact : artifacts) {
+				executor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						String path = getPath(artifact);
+						try {
+							String checksum = fetchChecksum(path + ".sha1");
+							if (checksum != null) {
+								checksums.put(path, checksum);
+							}
+						} catch (IOException e) {
+							log.debug("Cannot read remote checksum of " + path + ": " + e.getMessage());
+						}
+					}
+				});
+			}
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				log.debug("Waiting for remote checksums");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while fetching remote checksums", e);
+		} finally {
+			executor.shutdownNow();
+		}
+		log.info("Found " + checksums.size() + " of " + artifacts.size() + " artifacts in " + repository.getUrl());
+	}
+
+	/**
+	 * @return the artifacts that are not in the remote repository with the
+	 *         same content as their local file
+	 */
+	List<Artifact> getChanged(List<Artifact> artifacts) throws IOException {
+		List<Artifact> changed = new ArrayList<Artifact>(artifacts.size());
+		for (Artifact artifact : artifacts) {
+			if (isUnchanged(artifact)) {
+				existing.incrementAndGet();
+			} else {
+				changed.add(artifact);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * @return whether the remote repository has the artifact, with any
+	 *         content
+	 */
+	boolean isPresent(Artifact artifact) {
+		return checksums.containsKey(getPath(artifact));
+	}
+
+	/**
+	 * @return whether the remote repository has the artifact with the same
+	 *         content as its local file
+	 */
+	boolean isUnchanged(Artifact artifact) throws IOException {
+		String checksum = checksums.get(getPath(artifact));
+		return checksum != null && checksum.equals(digests.sha1(artifact.getFile()));
+	}
+
+	/**
+	 * @return the number of artifacts found in the remote repository so far
+	 */
+	int getExistingCount() {
+		return existing.get();
+	}
+
+	private String fetchChecksum(String path) throws IOException {
+		String base = repository.getUrl();
+		URLConnection connection = new URL(base.endsWith("/") ? base + path : base + "/" + path).openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+		Authentication authentication = repository.getAuthentication();
+		if (authentication != null && authentication.getUsername() != null) {
+			String credentials = authentication.getUsername() + ":" + (authentication.getPassword() != null ? authentication.getPassword() : "");
+			connection.setRequestProperty("Authorization", "Basic " + new String(Base64.encodeBase64(credentials.getBytes("UTF-8")), "US-ASCII"));
+		}
+		if (connection instanceof HttpURLConnection && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+			((HttpURLConnection) connection).disconnect();
+			return null;
+		}
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "US-ASCII"));
+			String line = reader.readLine();
+			if (line == null || line.trim().length() == 0) {
+				return null;
+			}
+			// checksum files may contain the file name after the hash
+			return line.trim().split("\\s+")[0].toLowerCase();
+		} catch (FileNotFoundException e) {
+			return null;
+		} finally {
+			IOUtil.close(reader);
+		}
+	}
+
+	private static String getPath(Artifact artifact) {
+		StringBuilder path = new StringBuilder();
+		path.append(artifact.getGroupId().replace('.', '/')).append('/');
+		path.append(artifact.getArtifactId()).append('/');
+		path.append(artifact.getBaseVersion()).append('/');
+		path.append(artifact.getArtifactId()).append('-').append(artifact.getVersion());
+		if (artifact.getClassifier().length() > 0) {
+			path.append('-').append(artifact.getClassifier());
+		}
+		path.append('.').append(artifact.getExtension());
+		return path.toString();
+	}
+
+}
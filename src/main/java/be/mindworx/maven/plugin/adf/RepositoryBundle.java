@@ -0,0 +1,508 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.artifact.repository.metadata.Metadata;
+
+import com.googlecode.mavenadf.FileDigest;
+
+/**
+ * A Maven repository written in a single pass: the artifacts in the default
+ * layout with their MD5 and SHA-1 checksum files, and a maven-metadata.xml
+ * listing all versions of every artifactId, as a repository manager expects
+ * them in a bulk import.
+ * <p>
+ * The repository is written to a folder, see {@link FileRepository}, or
+ * streamed to a single zip or tar archive. Files are copied with
+ * {@link FileChannel#transferTo}. A folder is written by all threads at once;
+ * an archive is written in order by the calling thread, which hashes every
+ * file while it streams it. Jars are stored in a zip archive without
+ * compressing them again, which needs their CRC before they are written: the
+ * other threads compute it a few files ahead, so the file is still in the
+ * file system cache when it is written. At most a few artifacts per thread
+ * are added ahead of the artifact being written.
+ * <p>
+ * Not thread safe: artifacts are added and the bundle is closed by a single
+ * thread.
+ */
+class RepositoryBundle {
+
+	enum Format {
+
+		DIRECTORY(""), ZIP(".zip"), TAR(".tar");
+
+		private final String extension;
+
+		private Format(String extension) {
+			this.extension = extension;
+		}
+
+		/**
+		 * @return the file, with the extension of the archive format added when
+		 *         it is missing
+		 */
+		File getFile(File file) {
+			if (extension.length() == 0 || file.getName().endsWith(extension)) {
+				return file;
+			}
+			return new File(file.getParentFile(), file.getName() + extension);
+		}
+	}
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int TAR_BLOCK = 512;
+
+	private static final int ARTIFACTS_AHEAD_PER_THREAD = 4;
+
+	private final File output;
+	private final ExecutorService executor;
+	private final int maxEntries;
+	private final Set<String> paths = new HashSet<String>();
+	private final RepositoryMetadata metadata = new RepositoryMetadata();
+	private FileRepository repository;
+	private final LinkedList<Entry> entries = new LinkedList<Entry>();
+	private OutputStream archive;
+	private ZipOutputStream zip;
+	private WritableByteChannel archiveChannel;
+	private int artifactCount;
+	private long bytes;
+
+	/**
+	 * @param output
+	 *            the folder or the archive file to write
+	 * @param digests
+	 *            the hashes of the scan, used when writing a folder
+	 */
+	RepositoryBundle(File output, Format format, int threads, FileDigests digests) throws IOException {
+		this.output = output;
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		this.maxEntries = Math.max(1, threads) * ARTIFACTS_AHEAD_PER_THREAD;
+		if (format == Format.DIRECTORY) {
+			repository = new FileRepository(output, false, false, digests);
+			return;
+		}
+		if (output.getParentFile() != null) {
+			FileRepository.mkdirs(output.getParentFile());
+		}
+		FileOutputStream out = new FileOutputStream(output);
+		if (format == Format.ZIP) {
+			zip = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+			archive = zip;
+			archiveChannel = Channels.newChannel(zip);
+		} else {
+			archive = out;
+			archiveChannel = out.getChannel();
+		}
+	}
+
+	/**
+	 * Writes to a repository in a folder, such as the local repository.
+	 */
+	RepositoryBundle(FileRepository repository, int threads) {
+		this.output = repository.getBasedir();
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		this.maxEntries = Math.max(1, threads) * ARTIFACTS_AHEAD_PER_THREAD;
+		this.repository = repository;
+	}
+
+	File getOutput() {
+		return output;
+	}
+
+	/**
+	 * Adds an artifact, which is written right away or as soon as the
+	 * artifacts added before it are written. Waits while too many artifacts
+	 * are not written yet.
+	 * 
+	 * @return <code>false</code> if the bundle already holds the same file of
+	 *         the artifact, which is then left out
+	 * @throws IOException
+	 *             if writing the artifacts added so far failed
+	 */
+	boolean add(final String groupId, final String artifactId, final String version, final String extension, final File file) throws IOException {
+		String path = FileRepository.getPath(groupId, artifactId, version, extension);
+		if (!paths.add(path)) {
+			return false;
+		}
+		Future<Long> installed = null;
+		Future<Checksums> checksums = null;
+		if (repository != null) {
+			installed = executor.submit(new Callable<Long>() {
+
+				@Override
+				public Long call() throws IOException {
+					return repository.install(groupId, artifactId, version, extension, file);
+				}
+			});
+		} else {
+			metadata.addVersion(groupId, artifactId, version);
+			if (zip != null && "jar".equals(extension)) {
+				checksums = executor.submit(new Callable<Checksums>() {
+
+					@Override
+					public Checksums call() throws IOException {
+						Checksums checksums = new Checksums(null);
+						FileRepository.transfer(file, file.length(), checksums);
+						return checksums;
+					}
+				});
+			}
+		}
+		entries.add(new Entry(path, file, installed, checksums));
+		artifactCount++;
+		writeEntries(false);
+		return true;
+	}
+
+	int getArtifactCount() {
+		return artifactCount;
+	}
+
+	/**
+	 * @return the size of the artifacts written so far
+	 */
+	long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Waits until all artifacts are written, then writes the metadata and
+	 * finishes the archive.
+	 */
+	void close() throws IOException {
+		try {
+			writeEntries(true);
+			if (repository != null) {
+				repository.writeMetadata();
+			} else {
+				writeMetadata();
+			}
+			if (zip != null) {
+				zip.finish();
+			} else if (archive != null) {
+				FileRepository.write(archiveChannel, new byte[2 * TAR_BLOCK]);
+			}
+			if (archive != null) {
+				archive.close();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Stops writing after a failure, deleting an unfinished archive.
+	 */
+	void abort() {
+		executor.shutdownNow();
+		if (archive != null) {
+			try {
+				archive.close();
+			} catch (IOException e) {
+				// the archive is deleted anyway
+			}
+			output.delete();
+		}
+	}
+
+	/**
+	 * Takes the written artifacts off the queue, and writes the next
+	 * artifacts to the archive in order.
+	 * 
+	 * @param wait
+	 *            whether to wait for all artifacts, or to stop at the first
+	 *            that is not ready yet once few enough are left
+	 */
+	private void writeEntries(boolean wait) throws IOException {
+		while (!entries.isEmpty() && (wait || entries.size() > maxEntries || entries.getFirst().isReady())) {
+			Entry entry = entries.removeFirst();
+			if (entry.installed != null) {
+				bytes += get(entry.installed);
+			} else if (entry.checksums != null) {
+				Checksums checksums = get(entry.checksums);
+				putStoredZipEntry(entry.path, checksums, entry.file.lastModified());
+				FileRepository.transfer(entry.file, checksums.getLength(), archiveChannel);
+				closeArchiveEntry(checksums.getLength());
+				writeChecksums(entry.path, checksums.getMd5(), checksums.getSha1());
+				bytes += checksums.getLength();
+			} else {
+				long length = entry.file.length();
+				Checksums checksums = new Checksums(archiveChannel);
+				putArchiveEntry(entry.path, length, entry.file.lastModified());
+				FileRepository.transfer(entry.file, length, checksums);
+				closeArchiveEntry(length);
+				writeChecksums(entry.path, checksums.getMd5(), checksums.getSha1());
+				bytes += length;
+			}
+		}
+	}
+
+	private void writeChecksums(String path, String md5, String sha1) throws IOException {
+		writeBytes(path + ".md5", md5.getBytes("US-ASCII"));
+		writeBytes(path + ".sha1", sha1.getBytes("US-ASCII"));
+	}
+
+	/**
+	 * Writes a small generated file to the archive.
+	 */
+	private void writeBytes(String path, byte[] content) throws IOException {
+		putArchiveEntry(path, content.length, System.currentTimeMillis());
+		FileRepository.write(archiveChannel, content);
+		closeArchiveEntry(content.length);
+	}
+
+	/**
+	 * Writes the maven-metadata.xml of every artifactId to the archive.
+	 */
+	private void writeMetadata() throws IOException {
+		Date now = new Date();
+		for (Metadata artifactMetadata : metadata.getMetadata()) {
+			byte[] content = RepositoryMetadata.toXml(artifactMetadata, now);
+			String path = RepositoryMetadata.getPath(artifactMetadata, "maven-metadata.xml");
+			writeBytes(path, content);
+			writeChecksums(path, FileRepository.hash("MD5", content), FileRepository.hash("SHA-1", content));
+		}
+	}
+
+	private void putArchiveEntry(String path, long length, long lastModified) throws IOException {
+		if (zip != null) {
+			ZipEntry entry = new ZipEntry(path);
+			entry.setTime(lastModified);
+			zip.putNextEntry(entry);
+		} else {
+			FileRepository.write(archiveChannel, getTarHeader(path, length, lastModified));
+		}
+	}
+
+	/**
+	 * Starts a zip entry that is stored as is, e.g. a jar that compressing
+	 * again would not make smaller.
+	 */
+	private void putStoredZipEntry(String path, Checksums checksums, long lastModified) throws IOException {
+		ZipEntry entry = new ZipEntry(path);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(checksums.getLength());
+		entry.setCompressedSize(checksums.getLength());
+		entry.setCrc(checksums.getCrc());
+		entry.setTime(lastModified);
+		zip.putNextEntry(entry);
+	}
+
+	private void closeArchiveEntry(long length) throws IOException {
+		if (zip != null) {
+			zip.closeEntry();
+		} else if (length % TAR_BLOCK != 0) {
+			FileRepository.write(archiveChannel, new byte[(int) (TAR_BLOCK - length % TAR_BLOCK)]);
+		}
+	}
+
+	/**
+	 * @return the POSIX ustar header of a regular file, with paths over 100
+	 *         bytes split over the name and the prefix field
+	 */
+	private static byte[] getTarHeader(String path, long length, long lastModified) throws IOException {
+		byte[] name = path.getBytes("UTF-8");
+		int split = 0;
+		if (name.length > 100) {
+			// split at the first slash that leaves at most 100 bytes for the name
+			split = -1;
+			for (int i = name.length - 101; i < name.length && i <= 155; i++) {
+				if (i > 0 && name[i] == '/') {
+					split = i;
+					break;
+				}
+			}
+			if (split < 0) {
+				throw new IOException("Path too long for a tar archive: " + path);
+			}
+		}
+		byte[] header = new byte[TAR_BLOCK];
+		if (split > 0) {
+			System.arraycopy(name, split + 1, header, 0, name.length - split - 1);
+			System.arraycopy(name, 0, header, 345, split);
+		} else {
+			System.arraycopy(name, 0, header, 0, name.length);
+		}
+		putOctal(header, 100, 8, 0644);
+		putOctal(header, 108, 8, 0);
+		putOctal(header, 116, 8, 0);
+		putOctal(header, 124, 12, length);
+		putOctal(header, 136, 12, lastModified / 1000);
+		header[156] = '0';
+		System.arraycopy("ustar\u000000".getBytes("US-ASCII"), 0, header, 257, 8);
+		for (int i = 148; i < 156; i++) {
+			header[i] = ' ';
+		}
+		long checksum = 0;
+		for (byte b : header) {
+			checksum += b & 0xff;
+		}
+		putOctal(header, 148, 7, checksum);
+		return header;
+	}
+
+	/**
+	 * Writes a zero padded octal number followed by a NUL.
+	 */
+	private static void putOctal(byte[] header, int offset, int length, long value) throws IOException {
+		String octal = Long.toOctalString(value);
+		if (octal.length() > length - 1) {
+			throw new IOException("Value too large for a tar header: " + value);
+		}
+		int start = offset + length - 1 - octal.length();
+		for (int i = offset; i < start; i++) {
+			header[i] = '0';
+		}
+		for (int i = 0; i < octal.length(); i++) {
+			header[start + i] = (byte) octal.charAt(i);
+		}
+		header[offset + length - 1] = 0;
+	}
+
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing the repository");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	private static final class Entry {
+
+		private final String path;
+		private final File file;
+		private final Future<Long> installed;
+		private final Future<Checksums> checksums;
+
+		/**
+		 * @param installed
+		 *            the artifact being installed in a folder, or
+		 *            <code>null</code> for an archive
+		 * @param checksums
+		 *            the checksums computed ahead of writing the artifact to
+		 *            an archive, or <code>null</code> to compute them while
+		 *            writing it
+		 */
+		private Entry(String path, File file, Future<Long> installed, Future<Checksums> checksums) {
+			this.path = path;
+			this.file = file;
+			this.installed = installed;
+			this.checksums = checksums;
+		}
+
+		private boolean isReady() {
+			Future<?> future = installed != null ? installed : checksums;
+			return future == null || future.isDone();
+		}
+	}
+
+	/**
+	 * Computes the MD5, SHA-1 and CRC32 of what is written through it, and
+	 * passes it on to the archive, if any.
+	 */
+	private static final class Checksums implements WritableByteChannel {
+
+		private final WritableByteChannel target;
+		private final MessageDigest md5 = getMessageDigest("MD5");
+		private final MessageDigest sha1 = getMessageDigest("SHA-1");
+		private final CRC32 crc = new CRC32();
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private long length;
+
+		/**
+		 * @param target
+		 *            the channel to pass the bytes on to, or <code>null</code>
+		 *            to only compute the checksums
+		 */
+		private Checksums(WritableByteChannel target) {
+			this.target = target;
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			ByteBuffer written = src.duplicate();
+			int count;
+			if (target != null) {
+				count = target.write(src);
+			} else {
+				count = src.remaining();
+				src.position(src.limit());
+			}
+			written.limit(written.position() + count);
+			while (written.hasRemaining()) {
+				int chunk = Math.min(buffer.length, written.remaining());
+				written.get(buffer, 0, chunk);
+				md5.update(buffer, 0, chunk);
+				sha1.update(buffer, 0, chunk);
+				crc.update(buffer, 0, chunk);
+			}
+			length += count;
+			return count;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			// the archive is closed by the bundle
+		}
+
+		private long getLength() {
+			return length;
+		}
+
+		private String getMd5() {
+			return FileDigest.toHex(md5.digest());
+		}
+
+		private String getSha1() {
+			return FileDigest.toHex(sha1.digest());
+		}
+
+		private long getCrc() {
+			return crc.getValue();
+		}
+
+		private static MessageDigest getMessageDigest(String algorithm) {
+			try {
+				return MessageDigest.getInstance(algorithm);
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(algorithm + " is not supported", e);
+			}
+		}
+	}
+
+}
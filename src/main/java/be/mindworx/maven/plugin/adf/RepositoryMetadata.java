@@ -0,0 +1,111 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.apache.maven.artifact.repository.metadata.Versioning;
+import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Reader;
+import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Writer;
+import org.apache.maven.artifact.versioning.ComparableVersion;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * The versions of every artifactId written to a repository, rendered as one
+ * maven-metadata.xml per artifactId. Thread safe.
+ */
+class RepositoryMetadata {
+
+	private final Map<String, Metadata> metadata = new TreeMap<String, Metadata>();
+
+	synchronized void addVersion(String groupId, String artifactId, String version) {
+		String key = groupId + ":" + artifactId;
+		Metadata artifactMetadata = metadata.get(key);
+		if (artifactMetadata == null) {
+			artifactMetadata = new Metadata();
+			artifactMetadata.setGroupId(groupId);
+			artifactMetadata.setArtifactId(artifactId);
+			artifactMetadata.setVersioning(new Versioning());
+			metadata.put(key, artifactMetadata);
+		}
+		if (!artifactMetadata.getVersioning().getVersions().contains(version)) {
+			artifactMetadata.getVersioning().addVersion(version);
+		}
+	}
+
+	/**
+	 * @return the metadata of every artifactId, in groupId and artifactId
+	 *         order
+	 */
+	synchronized List<Metadata> getMetadata() {
+		return new ArrayList<Metadata>(metadata.values());
+	}
+
+	/**
+	 * @return the path of a metadata file of the artifactId, relative to the
+	 *         repository root
+	 */
+	static String getPath(Metadata artifactMetadata, String fileName) {
+		return artifactMetadata.getGroupId().replace('.', '/') + "/" + artifactMetadata.getArtifactId() + "/" + fileName;
+	}
+
+	/**
+	 * Adds the versions of a metadata file that is already in the
+	 * repository, so writing the metadata again does not drop them.
+	 */
+	static void merge(Metadata artifactMetadata, File existing) throws IOException {
+		FileInputStream in = new FileInputStream(existing);
+		try {
+			Metadata existingMetadata = new MetadataXpp3Reader().read(in, false);
+			if (existingMetadata.getVersioning() != null) {
+				List<String> versions = artifactMetadata.getVersioning().getVersions();
+				for (String version : existingMetadata.getVersioning().getVersions()) {
+					if (!versions.contains(version)) {
+						versions.add(version);
+					}
+				}
+			}
+		} catch (XmlPullParserException e) {
+			throw new IOException("Invalid metadata " + existing + ": " + e.getMessage(), e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Renders the metadata, with its versions in Maven order and the latest
+	 * and release version set.
+	 */
+	static byte[] toXml(Metadata artifactMetadata, Date lastUpdated) throws IOException {
+		Versioning versioning = artifactMetadata.getVersioning();
+		List<String> versions = versioning.getVersions();
+		Collections.sort(versions, new Comparator<String>() {
+
+			@Override
+			public int compare(String version1, String version2) {
+				return new ComparableVersion(version1).compareTo(new ComparableVersion(version2));
+			}
+		});
+		versioning.setLatest(versions.get(versions.size() - 1));
+		for (String version : versions) {
+			if (!version.endsWith("-SNAPSHOT")) {
+				versioning.setRelease(version);
+			}
+		}
+		versioning.setLastUpdatedTimestamp(lastUpdated);
+
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		new MetadataXpp3Writer().write(xml, artifactMetadata);
+		return xml.toByteArray();
+	}
+
+}
@@ -0,0 +1,152 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.wagon.authentication.AuthenticationException;
+import org.apache.maven.wagon.authorization.AuthorizationException;
+
+/**
+ * Decides whether and when a failed deployment is tried again. Failures are
+ * classified by their cause: rejected credentials and other client errors are
+ * not retried, as another attempt gets the same answer. Timeouts, server
+ * errors and other I/O problems are retried with an exponential backoff: the
+ * delay doubles with every attempt up to a maximum, and a random jitter of up
+ * to half the delay keeps concurrent retries from hitting the repository at
+ * the same moment.
+ */
+class RetryPolicy {
+
+	/**
+	 * The kinds of failures that are treated differently.
+	 */
+	enum FailureClass {
+
+		/** The repository did not answer in time. */
+		TIMEOUT(true, true),
+
+		/** The repository answered with a 5xx status. */
+		SERVER_ERROR(true, true),
+
+		/** The repository rejected the credentials, a 401 or 403 status. */
+		UNAUTHORIZED(false, false),
+
+		/** Any other 4xx status, e.g. a release that cannot be redeployed. */
+		CLIENT_ERROR(false, false),
+
+		/** Anything else, e.g. a connection that was reset. */
+		OTHER(true, false);
+
+		private final boolean retryable;
+		private final boolean overload;
+
+		private FailureClass(boolean retryable, boolean overload) {
+			this.retryable = retryable;
+			this.overload = overload;
+		}
+
+		boolean isRetryable() {
+			return retryable;
+		}
+
+		/**
+		 * @return whether the failure suggests that the repository is
+		 *         overloaded or down, which counts for the circuit breaker
+		 */
+		boolean isOverload() {
+			return overload;
+		}
+	}
+
+	// as reported by the HTTP wagon, e.g. "Return code is: 503"
+	private static final Pattern STATUS = Pattern.compile("(?:[Rr]eturn code is|[Ss]tatus code|[Ss]tatus):? *(\\d{3})\\b");
+
+	private final int attempts;
+	private final long initialDelayMillis;
+	private final long maxDelayMillis;
+	private final Random random = new Random();
+
+	/**
+	 * @param attempts
+	 *            the number of attempts per deployment, including the first
+	 * @param initialDelayMillis
+	 *            the delay before the first retry
+	 * @param maxDelayMillis
+	 *            the maximum delay between two attempts
+	 */
+	RetryPolicy(int attempts, long initialDelayMillis, long maxDelayMillis) {
+		this.attempts = Math.max(1, attempts);
+		this.initialDelayMillis = Math.max(0, initialDelayMillis);
+		this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+	}
+
+	int getAttempts() {
+		return attempts;
+	}
+
+	long getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+
+	/**
+	 * @param attempt
+	 *            the attempt that failed, starting at 1
+	 * @return the delay in milliseconds before the next attempt, or -1 if the
+	 *         deployment should not be retried
+	 */
+	long getRetryDelay(FailureClass failure, int attempt) {
+		if (!failure.isRetryable() || attempt >= attempts) {
+			return -1;
+		}
+		long delay = getBackoff(attempt);
+		synchronized (random) {
+			return delay / 2 + (long) (random.nextDouble() * (delay / 2 + 1));
+		}
+	}
+
+	/**
+	 * @return the delay before attempt + 1 without jitter
+	 */
+	long getBackoff(int attempt) {
+		long delay = initialDelayMillis;
+		for (int i = 1; i < attempt && delay < maxDelayMillis; i++) {
+			delay *= 2;
+		}
+		return Math.min(delay, maxDelayMillis);
+	}
+
+	static FailureClass classify(Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof SocketTimeoutException) {
+				return FailureClass.TIMEOUT;
+			}
+			if (cause instanceof AuthenticationException || cause instanceof AuthorizationException) {
+				return FailureClass.UNAUTHORIZED;
+			}
+			String message = cause.getMessage();
+			if (message == null) {
+				continue;
+			}
+			Matcher status = STATUS.matcher(message);
+			if (status.find()) {
+				int code = Integer.parseInt(status.group(1));
+				if (code == 401 || code == 403) {
+					return FailureClass.UNAUTHORIZED;
+				} else if (code == 408 || code == 504) {
+					return FailureClass.TIMEOUT;
+				} else if (code >= 500) {
+					return FailureClass.SERVER_ERROR;
+				} else if (code >= 400) {
+					return FailureClass.CLIENT_ERROR;
+				}
+			}
+			if (message.contains("timed out")) {
+				return FailureClass.TIMEOUT;
+			}
+		}
+		return FailureClass.OTHER;
+	}
+
+}
@@ -0,0 +1,184 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import com.googlecode.mavenadf.Metrics;
+
+/**
+ * The metrics of a run, written as JSON and in the Prometheus text format.
+ * Both reports have the ADF version, and the phases of the deployment to each
+ * repository separately, so runs can be compared across versions and
+ * repository hosts. The Prometheus file can be picked up by the textfile
+ * collector of the node exporter.
+ */
+class RunReport {
+
+	private static final double[] PERCENTILES = { 50, 90, 99 };
+
+	private final Metrics metrics;
+	private final String adfVersion;
+	private final List<DeploymentTarget> targets;
+	private final Date created = new Date();
+
+	/**
+	 * @param metrics
+	 *            the metrics of the whole run, of which the phases that are
+	 *            also kept per repository are only reported per repository
+	 */
+	RunReport(Metrics metrics, String adfVersion, List<DeploymentTarget> targets) {
+		this.metrics = metrics;
+		this.adfVersion = adfVersion;
+		this.targets = targets;
+	}
+
+	/**
+	 * @return the timers of the phases that do not concern a single
+	 *         repository
+	 */
+	private Map<String, Metrics.Timer> getRunTimers() {
+		Map<String, Metrics.Timer> timers = new LinkedHashMap<String, Metrics.Timer>(metrics.getTimers());
+		for (DeploymentTarget target : targets) {
+			timers.keySet().removeAll(target.getMetrics().getTimers().keySet());
+		}
+		return timers;
+	}
+
+	void writeJson(File file) throws IOException {
+		JsonWriter json = new JsonWriter(file);
+		try {
+			json.beginObject();
+			json.property("created", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(created));
+			json.property("adfVersion", adfVersion);
+			writePhases(json, getRunTimers());
+			json.name("repositories").beginArray();
+			for (DeploymentTarget target : targets) {
+				json.beginObject();
+				json.property("id", target.getId());
+				json.property("url", target.getRepository().getUrl());
+				writePhases(json, target.getMetrics().getTimers());
+				json.endObject();
+			}
+			json.endArray();
+			json.endObject();
+		} finally {
+			json.close();
+		}
+	}
+
+	private static void writePhases(JsonWriter json, Map<String, Metrics.Timer> timers) throws IOException {
+		json.name("phases").beginObject();
+		for (Map.Entry<String, Metrics.Timer> phase : timers.entrySet()) {
+			Metrics.Timer timer = phase.getValue();
+			double seconds = timer.getTotalNanos() / 1e9;
+			json.name(phase.getKey()).beginObject();
+			json.property("count", timer.getCount());
+			json.property("items", timer.getItems());
+			json.property("bytes", timer.getBytes());
+			json.property("seconds", seconds);
+			// relative to the summed duration of the operations, which
+			// exceeds the elapsed time when they run concurrently
+			json.property("itemsPerSecond", seconds > 0 ? timer.getItems() / seconds : Double.NaN);
+			json.property("bytesPerSecond", seconds > 0 && timer.getBytes() > 0 ? timer.getBytes() / seconds : Double.NaN);
+			json.name("latencyMillis").beginObject();
+			json.property("mean", timer.getCount() > 0 ? timer.getTotalNanos() / 1e6 / timer.getCount() : Double.NaN);
+			for (double percentile : PERCENTILES) {
+				json.property("p" + (int) percentile, timer.getPercentileNanos(percentile) / 1e6);
+			}
+			json.property("max", timer.getPercentileNanos(100) / 1e6);
+			json.endObject();
+			json.endObject();
+		}
+		json.endObject();
+	}
+
+	/**
+	 * Writes to a temporary file first, so a collector never reads a partial
+	 * report.
+	 */
+	void writePrometheus(File file) throws IOException {
+		file.getParentFile().mkdirs();
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+		try {
+			String labels = "adf_version=\"" + escape(adfVersion) + "\"";
+			// the labels of each series of phases, with the repository for those of a single repository
+			Map<String, Map<String, Metrics.Timer>> series = new LinkedHashMap<String, Map<String, Metrics.Timer>>();
+			series.put(labels, getRunTimers());
+			for (DeploymentTarget target : targets) {
+				series.put(labels + ",repository=\"" + escape(target.getRepository().getUrl()) + "\"", target.getMetrics().getTimers());
+			}
+
+			out.write("# HELP adf_deploy_phase_seconds Duration of the operations of a deploy-adf phase.\n");
+			out.write("# TYPE adf_deploy_phase_seconds summary\n");
+			for (Map.Entry<String, Map<String, Metrics.Timer>> timers : series.entrySet()) {
+				for (Map.Entry<String, Metrics.Timer> phase : timers.getValue().entrySet()) {
+					Metrics.Timer timer = phase.getValue();
+					String phaseLabels = timers.getKey() + ",phase=\"" + escape(phase.getKey()) + "\"";
+					for (double percentile : PERCENTILES) {
+						sample(out, "adf_deploy_phase_seconds", phaseLabels + ",quantile=\"" + percentile / 100 + "\"", timer.getPercentileNanos(percentile) / 1e9);
+					}
+					sample(out, "adf_deploy_phase_seconds_sum", phaseLabels, timer.getTotalNanos() / 1e9);
+					sample(out, "adf_deploy_phase_seconds_count", phaseLabels, timer.getCount());
+				}
+			}
+
+			out.write("# HELP adf_deploy_phase_items Items processed by a deploy-adf phase in the last run.\n");
+			out.write("# TYPE adf_deploy_phase_items gauge\n");
+			for (Map.Entry<String, Map<String, Metrics.Timer>> timers : series.entrySet()) {
+				for (Map.Entry<String, Metrics.Timer> phase : timers.getValue().entrySet()) {
+					sample(out, "adf_deploy_phase_items", timers.getKey() + ",phase=\"" + escape(phase.getKey()) + "\"", phase.getValue().getItems());
+				}
+			}
+
+			out.write("# HELP adf_deploy_phase_bytes Bytes processed by a deploy-adf phase in the last run.\n");
+			out.write("# TYPE adf_deploy_phase_bytes gauge\n");
+			for (Map.Entry<String, Map<String, Metrics.Timer>> timers : series.entrySet()) {
+				for (Map.Entry<String, Metrics.Timer> phase : timers.getValue().entrySet()) {
+					sample(out, "adf_deploy_phase_bytes", timers.getKey() + ",phase=\"" + escape(phase.getKey()) + "\"", phase.getValue().getBytes());
+				}
+			}
+
+			out.write("# HELP adf_deploy_last_run_timestamp_seconds Time the deploy-adf run finished.\n");
+			out.write("# TYPE adf_deploy_last_run_timestamp_seconds gauge\n");
+			sample(out, "adf_deploy_last_run_timestamp_seconds", labels, created.getTime() / 1e3);
+		} finally {
+			IOUtil.close(out);
+		}
+		file.delete();
+		if (!temp.renameTo(file)) {
+			throw new IOException("Cannot write " + file);
+		}
+	}
+
+	private static void sample(Writer out, String name, String labels, double value) throws IOException {
+		out.write(name);
+		out.write('{');
+		out.write(labels);
+		out.write("} ");
+		out.write(value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value));
+		out.write('\n');
+	}
+
+	/**
+	 * Escapes a label value of the Prometheus text format.
+	 */
+	private static String escape(String value) {
+		if (value == null) {
+			return "";
+		}
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.googlecode.mavenadf;
+
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ * Reads the library hooks of a META-INF/extension.xml.
+ *
+ * @author Krisje
+ *
+ */
+interface ExtensionParser {
+
+	/**
+	 * Parses the extension.xml of a jar. Errors are reported on the console;
+	 * the libraries read up to the error are still returned.
+	 *
+	 * @param file
+	 *            the jar containing the extension.xml
+	 * @param in
+	 *            the content of the extension.xml
+	 */
+	JarExtension parse(File file, InputStream in);
+
+}
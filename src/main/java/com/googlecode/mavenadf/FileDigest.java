@@ -0,0 +1,120 @@
+package com.googlecode.mavenadf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The MD5, SHA-1 and SHA-256 hashes of a file, computed together in a single
+ * pass over its content, with the size and last modification time of the
+ * file at that moment.
+ *
+ * @author Krisje
+ *
+ */
+public final class FileDigest implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final long length;
+	private final long lastModified;
+	private final String md5;
+	private final String sha1;
+	private final String sha256;
+
+	private FileDigest(long length, long lastModified, String md5, String sha1, String sha256) {
+		this.length = length;
+		this.lastModified = lastModified;
+		this.md5 = md5;
+		this.sha1 = sha1;
+		this.sha256 = sha256;
+	}
+
+	/**
+	 * Reads the file once and computes all hashes.
+	 */
+	public static FileDigest compute(File file) throws IOException {
+		MessageDigest md5 = getInstance("MD5");
+		MessageDigest sha1 = getInstance("SHA-1");
+		MessageDigest sha256 = getInstance("SHA-256");
+		long length = file.length();
+		long lastModified = file.lastModified();
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			byte[] bytes = buffer.array();
+			int read;
+			while ((read = channel.read(buffer)) != -1) {
+				md5.update(bytes, 0, read);
+				sha1.update(bytes, 0, read);
+				sha256.update(bytes, 0, read);
+				buffer.clear();
+			}
+		} finally {
+			in.close();
+		}
+		return new FileDigest(length, lastModified, toHex(md5.digest()), toHex(sha1.digest()), toHex(sha256.digest()));
+	}
+
+	/**
+	 * @return whether the size and modification time of the file are still
+	 *         the ones it had when the hashes were computed
+	 */
+	public boolean matches(File file) {
+		return length == file.length() && lastModified == file.lastModified();
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @return the lowercase hexadecimal MD5 hash
+	 */
+	public String getMd5() {
+		return md5;
+	}
+
+	/**
+	 * @return the lowercase hexadecimal SHA-1 hash
+	 */
+	public String getSha1() {
+		return sha1;
+	}
+
+	/**
+	 * @return the lowercase hexadecimal SHA-256 hash
+	 */
+	public String getSha256() {
+		return sha256;
+	}
+
+	public static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+		}
+		return hex.toString();
+	}
+
+	private static MessageDigest getInstance(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
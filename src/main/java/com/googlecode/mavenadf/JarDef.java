@@ -1,6 +1,5 @@
 package com.googlecode.mavenadf;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.jar.Attributes;
 
@@ -25,6 +24,8 @@ public class JarDef implements Comparable<JarDef> {
 	private int type;
 	private Attributes manifestAttributes;
 	private boolean exists = false;
+	private String groupId;
+	private String artifactId;
 
 	public static int JAR = 0;
 	public static int SRC = 1;
@@ -42,6 +43,8 @@ public class JarDef implements Comparable<JarDef> {
 	}
 
 	public void setFilename(String newfilename) {
+		ScanContext context = library.getContext();
+		resetCoordinates();
 		boolean override = false;
 		if ("${jdbc.library}".equals(newfilename)) {
 			this.filename = "../../../wlserver_10.3/server/lib/ojdbc6.jar";
@@ -50,9 +53,9 @@ public class JarDef implements Comparable<JarDef> {
 			this.filename = "../../../oracle_common/modules/oracle.nlsrtl_11.1.0/orai18n.jar";
 			override = true;
 		} else if (newfilename.contains("${ide.extension.install.home}")) {
-			String path = JarLoader.getCurrentFile().getAbsolutePath();
+			String path = library.getLibraryFile().getAbsolutePath();
 			path = path.substring(0, path.lastIndexOf('.'));
-			path = path.replace(JarLoader.jdevHome.getAbsolutePath(), ".");
+			path = path.replace(context.getJdevHome().getAbsolutePath(), ".");
 			this.filename = newfilename.replace("${ide.extension.install.home}", path);
 			override = true;
 		} else if (newfilename.startsWith("./") || newfilename.startsWith(".\\")) {
@@ -61,22 +64,13 @@ public class JarDef implements Comparable<JarDef> {
 			this.filename = newfilename;
 		}
 
-		File file = new File(getPathAndFilename());
-		if (!file.exists()) {
-			file = new File(JarLoader.jdevHome, getPathAndFilename());
-		}
-		if (!file.exists()) {
-			file = new File(JarLoader.jdevHome, File.separator + ".." + File.separator + getPathAndFilename());
-		}
-		if (file.exists() && file.isFile()) {
+		PathResolver.Resolution resolution = context.getPathResolver().resolve(getPathAndFilename());
+		if (resolution.exists()) {
 			setExists(true);
-			try {
-				this.filename = file.getCanonicalPath();
-				this.filename = this.filename.replaceAll("\\\\", "/");
-			} catch (IOException e) {
-				System.err.println("Cannot find canonical path of: " + file.getPath());
+			if (resolution.getFilename() != null) {
+				this.filename = resolution.getFilename();
 			}
-			if (override && JarLoader.verbose) {
+			if (override && context.isVerbose()) {
 				System.out.println("Overriding symbolic " + newfilename + " with: " + this.filename);
 			}
 		}
@@ -103,10 +97,20 @@ public class JarDef implements Comparable<JarDef> {
 		}
 	}
 
+	/**
+	 * The coordinates are computed once and shared with every other jar of the
+	 * scan with the same groupId.
+	 */
 	public String getGroupId() throws IOException {
+		if (groupId == null) {
+			ScanContext context = library.getContext();
+			groupId = context.intern(library.getGroupIdPrefix() + ".jars." + getGroupIdPath(context.getMiddlewareHome()));
+		}
+		return groupId;
+	}
+
+	private String getGroupIdPath(String middlewarehome) {
 		String path = getFilename();
-		String middlewarehome = JarLoader.jdevHome.getParentFile().getCanonicalPath();
-		middlewarehome = middlewarehome.replaceAll("\\\\", "/");
 		if (path.contains(middlewarehome)) {
 			path = path.substring(middlewarehome.length() + 1);
 		}
@@ -133,10 +137,17 @@ public class JarDef implements Comparable<JarDef> {
 			groupId = groupId.substring(0, groupId.length() - 1);
 		}
 
-		return library.getGroupIdPrefix() + ".jars." + groupId;
+		return groupId;
 	}
 
 	public String getArtifactId() {
+		if (artifactId == null) {
+			artifactId = library.getContext().intern(getArtifactIdPath());
+		}
+		return artifactId;
+	}
+
+	private String getArtifactIdPath() {
 		int lastSlash = getFilename().lastIndexOf("/") + 1;
 		int lastDot = getFilename().lastIndexOf(".");
 		try {
@@ -177,6 +188,16 @@ public class JarDef implements Comparable<JarDef> {
 
 	public void setLibrary(JarLibrary library) {
 		this.library = library;
+		resetCoordinates();
+	}
+
+	/**
+	 * Forgets the computed coordinates after the filename or the groupId
+	 * prefix of the library changed.
+	 */
+	void resetCoordinates() {
+		groupId = null;
+		artifactId = null;
 	}
 
 	public boolean exists() {
@@ -0,0 +1,70 @@
+package com.googlecode.mavenadf;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The libraries read from the META-INF/extension.xml of a single jar.
+ * <p>
+ * The library definitions are kept as declared, so they can be cached between
+ * scans; the resolved libraries only live for the current scan.
+ *
+ * @author Krisje
+ *
+ */
+public class JarExtension implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final File file;
+	private String id;
+	private String version;
+	private List<LibraryDefinition> definitions = new ArrayList<LibraryDefinition>();
+	private transient List<JarLibrary> libraries;
+
+	public JarExtension(File file) {
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setVersion(String version) {
+		this.version = version;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public void addDefinition(LibraryDefinition definition) {
+		definitions.add(definition);
+	}
+
+	public List<LibraryDefinition> getDefinitions() {
+		return definitions;
+	}
+
+	public void addLibrary(JarLibrary lib) {
+		getLibraries().add(lib);
+	}
+
+	public List<JarLibrary> getLibraries() {
+		if (libraries == null) {
+			libraries = new ArrayList<JarLibrary>();
+		}
+		return libraries;
+	}
+
+}
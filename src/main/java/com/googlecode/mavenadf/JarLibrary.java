@@ -1,11 +1,11 @@
 package com.googlecode.mavenadf;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.StringTokenizer;
-import java.util.jar.Attributes;
-import java.util.jar.JarFile;
-import java.util.jar.Manifest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,6 +16,7 @@ import java.util.regex.Pattern;
  */
 public class JarLibrary implements Comparable<JarLibrary> {
 
+  private final ScanContext context;
   private File libraryFile;
   private String name;
   private String xmlns;
@@ -23,8 +24,12 @@ public class JarLibrary implements Comparable<JarLibrary> {
   private String extensionVersion;
   private String deployed;
   private String groupId;
+  private String fullGroupId;
+  private String artifactId;
 
   private ArrayList<JarDef> jars = new ArrayList<JarDef>(10);
+  // the same jars, by filename
+  private Map<String, JarDef> jarsByFilename = new HashMap<String, JarDef>();
   private String version;
   private String packaging;
 
@@ -38,7 +43,9 @@ public class JarLibrary implements Comparable<JarLibrary> {
 private File pomFile;
 private String groupIdPrefix;
 
-  public JarLibrary() {
+  JarLibrary(ScanContext context, File libraryFile) {
+    this.context = context;
+    this.libraryFile = libraryFile;
   }
   
   public ArrayList<JarDef> getJars() {
@@ -47,17 +54,21 @@ private String groupIdPrefix;
 
   public void setJars(ArrayList<JarDef> jars) {
     this.jars = jars;
+    this.jarsByFilename = new HashMap<String, JarDef>();
+    for (JarDef jarDef : jars) {
+      if (!jarsByFilename.containsKey(jarDef.getFilename())) {
+        jarsByFilename.put(jarDef.getFilename(), jarDef);
+      }
+    }
   }
 
   public boolean addFile(JarDef jar) {
-    for (JarDef jarDef : getJars()) {
-      if (jarDef.getFilename().equals(jar.getFilename())) {
-        // already have this jar in our collection
-        return false;
-      }
+    if (jarsByFilename.containsKey(jar.getFilename())) {
+      // already have this jar in our collection
+      return false;
     }
 
-    if (JarLoader.verbose) {
+    if (context.isVerbose()) {
       if (jar.exists()) {
         System.out.println("  " + getName() + ": Adding " + (jar.getType() == JarDef.MANIFEST ? "(manifest) " : "") + jar.toString());
       } else {
@@ -65,6 +76,7 @@ private String groupIdPrefix;
       }
     }
     getJars().add(jar);
+    jarsByFilename.put(jar.getFilename(), jar);
     return true;
   }
 
@@ -74,44 +86,67 @@ private String groupIdPrefix;
 
   private void privAddJarFile(String filepath, int type) {
     JarDef jar = new JarDef(this, filepath, type);
-    if (addFile(jar)) {
-      if (JarLoader.useClasspathManifest) {
-        File file = new File(jar.getFilename());
-        if (file.exists() && file.isFile()) {
-          try {
-            JarFile jarFile = new JarFile(jar.getFilename());
-            Manifest manifest = jarFile.getManifest();
-            if (manifest != null) {
-              Attributes attributes = manifest.getMainAttributes();
-              jar.setManifestAttributes(attributes);
-              String classpath = attributes.getValue("Class-Path");
-              if (classpath != null && !"".equals(classpath.trim())) {
-                if (JarLoader.verbose) {
-                  System.out.println("    Manifest classpath for Library: " + jar.getLibrary().getName() + " \n     jarfile: " + jar.getFilename()
-                      + " \n     manifest: " + classpath);
-                }
-                StringTokenizer st = new StringTokenizer(classpath, " ");
-                String basePath = ".";
-                if (jar.getFilename().lastIndexOf("/") >= 0) {
-                  basePath = jar.getFilename().substring(0, jar.getFilename().lastIndexOf("/"));
-                }
-                while (st.hasMoreTokens()) {
-                  String manifestjarfile = st.nextToken();
-                  if (manifestjarfile.endsWith(".jar")) {
-                    privAddJarFile(basePath + "/" + manifestjarfile, JarDef.MANIFEST);
-                  }
-                }
-              }
-            }
-          } catch (Throwable t) {
-            t.printStackTrace();
-          }
+    if (addFile(jar) && context.isUseClasspathManifest()) {
+      List<String> closure = context.getManifestClosure(this, jar.getFilename());
+      if (containsUnexpandedJar(closure)) {
+        addManifestJars(jar);
+        return;
+      }
+      // every jar already in this library brought its own closure along, so
+      // adding the new jars in closure order gives the depth first order
+      setManifest(jar);
+      for (int i = 1; i < closure.size(); i++) {
+        JarDef manifestJar = new JarDef(this, closure.get(i), JarDef.MANIFEST);
+        if (addFile(manifestJar)) {
+          setManifest(manifestJar);
+        }
+      }
+    }
+  }
+
+  /**
+   * A source or doc entry with the same filename as a manifest jar was never
+   * expanded, so the closure order cannot be used.
+   */
+  private boolean containsUnexpandedJar(List<String> closure) {
+    for (int i = 1; i < closure.size(); i++) {
+      JarDef present = getJar(closure.get(i));
+      if (present != null && (present.getType() == JarDef.SRC || present.getType() == JarDef.DOC)) {
+        return true;
+      }
+    }
+    return false;
+  }
 
+  private void addManifestJars(JarDef jar) {
+    JarManifest manifest = setManifest(jar);
+    if (manifest != null) {
+      for (String path : manifest.getClassPathJars()) {
+        JarDef manifestJar = new JarDef(this, path, JarDef.MANIFEST);
+        if (addFile(manifestJar)) {
+          addManifestJars(manifestJar);
         }
       }
     }
   }
 
+  private JarManifest setManifest(JarDef jar) {
+    JarManifest manifest = context.getManifest(jar.getFilename());
+    if (manifest != null) {
+      jar.setManifestAttributes(manifest.getAttributes());
+      String classpath = manifest.getClassPath();
+      if (classpath != null && !"".equals(classpath.trim()) && context.isVerbose()) {
+        System.out.println("    Manifest classpath for Library: " + jar.getLibrary().getName() + " \n     jarfile: " + jar.getFilename()
+            + " \n     manifest: " + classpath);
+      }
+    }
+    return manifest;
+  }
+
+  JarDef getJar(String filename) {
+    return jarsByFilename.get(filename);
+  }
+
   public void addSrcFile(String path) {
     addFile(new JarDef(this, path, JarDef.SRC));
   }
@@ -125,6 +160,7 @@ private String groupIdPrefix;
   }
 
   public void setName(String name) {
+    artifactId = null;
     if (this.name != null) {
       System.err.println("Renaming: " + this.name + " to: " + name);
     }
@@ -145,8 +181,29 @@ private String groupIdPrefix;
 
   // Convert name into something valid for Maven.
   public String getArtifactId() {
-    Matcher libNameMatcher = INVALID_CHARS_PATTERN.matcher(getName());
-    return libNameMatcher.replaceAll("_");
+    if (artifactId == null) {
+      Matcher libNameMatcher = INVALID_CHARS_PATTERN.matcher(getName());
+      artifactId = libNameMatcher.replaceAll("_");
+    }
+    return artifactId;
+  }
+
+  /**
+   * Computes the Maven coordinates of this library and its jars up front, so
+   * POM writing, deployment and the dependencyManagement export do not need
+   * the file system or regular expressions any more.
+   */
+  void computeCoordinates() throws IOException {
+    getArtifactId();
+    getGroupId();
+    for (JarDef jar : getJars()) {
+      jar.getGroupId();
+      jar.getArtifactId();
+    }
+  }
+
+  ScanContext getContext() {
+    return context;
   }
 
 public File getLibraryFile() {
@@ -183,11 +240,14 @@ public File getLibraryFile() {
 
 	public void setGroupId(String groupId) {
 		this.groupId = groupId;
-		
+		this.fullGroupId = null;
 	}
 	
 	public String getGroupId() {
-		return groupIdPrefix + groupId;
+		if (fullGroupId == null) {
+			fullGroupId = context.intern(groupIdPrefix + groupId);
+		}
+		return fullGroupId;
 	}
 
 	public void setVersion(String version) {
@@ -216,6 +276,10 @@ public File getLibraryFile() {
 
 	public void setGroupIdPrefix(String groupIdPrefix) {
 		this.groupIdPrefix = groupIdPrefix;
+		this.fullGroupId = null;
+		for (JarDef jar : getJars()) {
+			jar.resetCoordinates();
+		}
 	}
 	
 	String getGroupIdPrefix() {
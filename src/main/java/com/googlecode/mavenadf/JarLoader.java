@@ -1,20 +1,30 @@
 package com.googlecode.mavenadf;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
-import org.apache.commons.digester.Digester;
-import org.xml.sax.SAXException;
 
 /**
  * 
@@ -24,47 +34,135 @@ import org.xml.sax.SAXException;
 public class JarLoader {
 
 	private static final String GROUP_ID_SUFFIX = ".library";
+	private static final ExtensionParser EXTENSION_PARSER = new StaxExtensionParser();
 	private final File workFolder;
 	private final String adfVersion;
 	private final String groupIdPrefix;
 	private final String packagingType;
-
-	static File jdevHome;
-	static boolean verbose;
-	static boolean useClasspathManifest;
-
-	private static File currentFile = null;
-
-	private String id = null;
-	private String version = null;
+	private final ScanContext context;
+	private final int scanThreads;
+	private boolean pomDigests;
 
 	private List<JarLibrary> libs = null;
+	private SortedMap<String, JarDef> jarIndex;
+	private Set<JarDef> jars;
 
 	public JarLoader(File workFolder, File jdevHome, String adfVersion, String groupIdPrefix, boolean verbose, boolean useClasspathManifest, String packagingType) {
+		this(workFolder, jdevHome, adfVersion, groupIdPrefix, verbose, useClasspathManifest, packagingType, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param scanThreads
+	 *            number of threads used to walk the JDeveloper home and
+	 *            inspect its jars. A value of 1 scans on the calling thread.
+	 */
+	public JarLoader(File workFolder, File jdevHome, String adfVersion, String groupIdPrefix, boolean verbose, boolean useClasspathManifest,
+			String packagingType, int scanThreads) {
+		this(workFolder, jdevHome, adfVersion, groupIdPrefix, verbose, useClasspathManifest, packagingType, scanThreads, false);
+	}
+
+	/**
+	 * @param useScanCache
+	 *            keep what was read from the jars in a cache file in the work
+	 *            folder, and reuse it for jars that did not change since the
+	 *            previous scan
+	 */
+	public JarLoader(File workFolder, File jdevHome, String adfVersion, String groupIdPrefix, boolean verbose, boolean useClasspathManifest,
+			String packagingType, int scanThreads, boolean useScanCache) {
 		this.workFolder = workFolder;
 		this.adfVersion = adfVersion;
 		this.groupIdPrefix = groupIdPrefix;
 		this.packagingType = packagingType;
-		JarLoader.jdevHome = jdevHome;
-		JarLoader.verbose = verbose;
-		JarLoader.useClasspathManifest = useClasspathManifest;
+		ScanCache cache = useScanCache ? new ScanCache(new File(workFolder, "scan-cache.ser")) : null;
+		this.context = new ScanContext(jdevHome, verbose, useClasspathManifest, cache);
+		this.scanThreads = Math.max(1, scanThreads);
+	}
+
+	/**
+	 * @param maxOpenFiles
+	 *            the maximum number of jars the scan keeps open at the same
+	 *            time, 64 by default. Each jar is closed as soon as its
+	 *            extension.xml or manifest has been read.
+	 */
+	public void setMaxOpenFiles(int maxOpenFiles) {
+		context.setMaxOpenFiles(maxOpenFiles);
+	}
+
+	/**
+	 * @return the time, bytes and number of items of the scan phases: the
+	 *         whole scan, the extension.xml files, the manifests and the
+	 *         library POMs
+	 */
+	public Metrics getMetrics() {
+		return context.getMetrics();
+	}
+
+	/**
+	 * @param pomDigests
+	 *            write the MD5, SHA-1 and SHA-256 hashes of each jar as
+	 *            comments in the library POMs. Every jar is read once for all
+	 *            three, the hashes are reused by {@link #getDigest(File)}.
+	 */
+	public void setPomDigests(boolean pomDigests) {
+		this.pomDigests = pomDigests;
+	}
+
+	/**
+	 * @return the hashes of a jar or any other file, computed at most once per
+	 *         scan
+	 */
+	public FileDigest getDigest(File file) throws IOException {
+		return context.getDigest(file);
 	}
 
 	public List<JarLibrary> getLibraries() {
 		if (libs == null) {
-			readLibraries(jdevHome);
+			readLibraries(context.getJdevHome(), null);
 		}
 		return libs;
 	}
 
-	public Set<JarDef> getJars() {
-		TreeSet<JarDef> sortedJars = new TreeSet<JarDef>();
-
-		for (JarLibrary lib : getLibraries()) {
-			sortedJars.addAll(lib.getJars());
+	/**
+	 * Scans the JDeveloper home like {@link #getLibraries()}, but passes every
+	 * library to the listener as soon as its coordinates and POM are ready, so
+	 * the libraries can be processed while the scan goes on. The library POMs
+	 * are then written one by one on the calling thread.
+	 * <p>
+	 * A library whose POM file name is already used by an earlier library
+	 * gets its POM in a separate file, as the POM of the earlier library may
+	 * be in use, and is held back until the end of the scan. The libraries of
+	 * such a name are then all passed with the POM of the last of them, as
+	 * {@link #getLibraries()} leaves it, the earlier ones again without jars.
+	 * When the home was already scanned the libraries are passed right away.
+	 */
+	public void scan(ScanListener listener) {
+		if (libs == null) {
+			readLibraries(context.getJdevHome(), listener);
+			return;
+		}
+		Set<String> filenames = new HashSet<String>();
+		for (JarLibrary lib : libs) {
+			listener.libraryScanned(lib, getNewJars(lib, filenames));
 		}
+	}
 
-		return sortedJars;
+	/**
+	 * @return the jars of all libraries sorted by filename. A jar used by
+	 *         several libraries is represented by the {@link JarDef} of the
+	 *         first of those libraries.
+	 */
+	public Set<JarDef> getJars() {
+		getLibraries();
+		return jars;
+	}
+
+	/**
+	 * @return the jar with the given filename, as returned by
+	 *         {@link #getJars()}, or <code>null</code>
+	 */
+	public JarDef getJar(String filename) {
+		getLibraries();
+		return jarIndex.get(filename);
 	}
 
 	public File writeMavenDependencyManagementFile() {
@@ -74,57 +172,106 @@ public class JarLoader {
 		}
 
 		TreeSet<JarLibrary> sortedLibs = new TreeSet<JarLibrary>(getLibraries());
-		TreeSet<JarDef> sortedJars = new TreeSet<JarDef>(getJars());
+		Set<JarDef> sortedJars = getJars();
 		
-		FileWriter xml = null;
+		XmlWriter xml = null;
 		try {
-			xml = new FileWriter(xmlFile);
-			xml.append("  <dependencyManagement>\n");
-			xml.append("    <dependencies>\n");
-			xml.append("      <!-- JDev libraries -->");
+			xml = new XmlWriter(xmlFile);
+			xml.markup("  <dependencyManagement>\n");
+			xml.markup("    <dependencies>\n");
+			xml.markup("      <!-- JDev libraries -->");
 			for (JarLibrary jarLibrary : sortedLibs) {
-				xml.append("      <dependency>\n");
-				xml.append("        <groupId>" + jarLibrary.getGroupId() + "</groupId>\n");
-				xml.append("        <artifactId>" + jarLibrary.getArtifactId() + "</artifactId>\n");
-				xml.append("        <version>" + jarLibrary.getVersion() + "</version>\n");
-				xml.append("        <type>" + jarLibrary.getPackaging() + "</type>\n");
-				xml.append("	  </dependency>\n");
+				xml.markup("      <dependency>\n");
+				xml.element("        ", "groupId", jarLibrary.getGroupId());
+				xml.element("        ", "artifactId", jarLibrary.getArtifactId());
+				xml.element("        ", "version", jarLibrary.getVersion());
+				xml.element("        ", "type", jarLibrary.getPackaging());
+				xml.markup("	  </dependency>\n");
 			}
-			xml.append("      <!-- JDev library jars -->");
+			xml.markup("      <!-- JDev library jars -->");
 			for (JarDef libraryJar : sortedJars) {
-				xml.append("      <dependency>\n");
-				xml.append("        <groupId>" + libraryJar.getGroupId() + "</groupId>\n");
-				xml.append("        <artifactId>" + libraryJar.getArtifactId() + "</artifactId>\n");
-				xml.append("        <version>" + libraryJar.getLibrary().getVersion() + "</version>\n");
-				xml.append("		<scope>provided</scope>\n");
-				xml.append("	  </dependency>\n");
+				xml.markup("      <dependency>\n");
+				xml.element("        ", "groupId", libraryJar.getGroupId());
+				xml.element("        ", "artifactId", libraryJar.getArtifactId());
+				xml.element("        ", "version", libraryJar.getLibrary().getVersion());
+				xml.markup("		<scope>provided</scope>\n");
+				xml.markup("	  </dependency>\n");
 			}
-			xml.append("    </dependencies>\n");
-			xml.append("  </dependencyManagement>");
+			xml.markup("    </dependencies>\n");
+			xml.markup("  </dependencyManagement>");
 		} catch (IOException e) {
 			e.printStackTrace();
 		} finally {
-			try {
-				xml.flush();
-				xml.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			close(xml);
 		}
 		return xmlFile;
 	}
 
-	private File writeMavenLibraryPom(JarLibrary lib) {
-		File pomDir = getPomDir();
+	/**
+	 * Writes the library POMs, in parallel when scanning with several threads.
+	 * Libraries whose POM files could be the same file, also on a case
+	 * insensitive file system, are written by the same task in library order,
+	 * so the last one wins as it would when writing serially.
+	 */
+	private void writeMavenLibraryPoms() {
+		final File pomDir = getPomDir();
 		if (!pomDir.exists()) {
 			pomDir.mkdirs();
 		}
+		if (scanThreads == 1) {
+			for (JarLibrary lib : libs) {
+				lib.setPomFile(writeMavenLibraryPom(lib, pomDir));
+			}
+			return;
+		}
+
+		Map<String, List<JarLibrary>> libsByPom = new LinkedHashMap<String, List<JarLibrary>>();
+		for (JarLibrary lib : libs) {
+			String key = lib.getArtifactId().toLowerCase(Locale.ENGLISH);
+			List<JarLibrary> group = libsByPom.get(key);
+			if (group == null) {
+				group = new ArrayList<JarLibrary>(1);
+				libsByPom.put(key, group);
+			}
+			group.add(lib);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(scanThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(libsByPom.size());
+			for (final List<JarLibrary> group : libsByPom.values()) {
+				futures.add(executor.submit(new Runnable() {
+
+					@Override
+					public void run() {
+						for (JarLibrary lib : group) {
+							lib.setPomFile(writeMavenLibraryPom(lib, pomDir));
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while writing the library poms", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 
+	private File writeMavenLibraryPom(JarLibrary lib, File pomDir) {
+		long start = System.nanoTime();
 		File pomFile = new File(pomDir, lib.getArtifactId() + ".pom");
-		FileWriter out = null;
+		XmlWriter out = null;
 		try {
-			out = new FileWriter(pomFile);
-			if (verbose) {
+			out = new XmlWriter(pomFile);
+			if (context.isVerbose()) {
 				System.out.println("Creating pom for " + lib.getName());
 			}
 			writePomBegin(lib, out);
@@ -132,7 +279,7 @@ public class JarLoader {
 				if ((jar.getType() == JarDef.JAR || jar.getType() == JarDef.MANIFEST)) {
 					writeJarDep(lib, jar, out);
 				} else {
-					if (verbose) {
+					if (context.isVerbose()) {
 						System.out.println("Lib: " + lib.getName() + " Skipping: " + jar.getFilename());
 					}
 				}
@@ -142,104 +289,81 @@ public class JarLoader {
 			System.err.println("Error creating: " + lib.getName());
 			System.err.println(e.getMessage());
 		} finally {
-			try {
-				out.flush();
-				out.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			close(out);
 		}
+		context.getMetrics().record("library-pom", start, pomFile.length(), 1);
 
 		return pomFile;
 	}
 
-	private void writePomBegin(JarLibrary lib, FileWriter out) throws IOException {
-		String libPath = lib.getLibraryFile().getCanonicalPath().substring(jdevHome.getCanonicalPath().length() + 1);
-		out.append("<project>\n");
-		out.append("  <modelVersion>4.0.0</modelVersion>\n");
-		out.append("  <groupId>" + lib.getGroupId() + "</groupId>\n");
-		out.append("  <artifactId>" + lib.getArtifactId() + "</artifactId>\n");
+	private void writePomBegin(JarLibrary lib, XmlWriter out) throws IOException {
+		String libPath = lib.getLibraryFile().getCanonicalPath().substring(context.getJdevHome().getCanonicalPath().length() + 1);
+		out.markup("<project>\n");
+		out.markup("  <modelVersion>4.0.0</modelVersion>\n");
+		out.element("  ", "groupId", lib.getGroupId());
+		out.element("  ", "artifactId", lib.getArtifactId());
 		String deployedByDefault = lib.getDeployed();
 		if (deployedByDefault == null) {
 			deployedByDefault = "false";
 		}
-		out.append("  <!-- JDeveloper library name: '" + lib.getName() + "' -->\n");
-		out.append("  <!-- Deployed by default: " + deployedByDefault + "-->\n");
-		out.append("  <packaging>" + lib.getPackaging() + "</packaging>\n");
-		out.append("  <version>" + lib.getVersion() + "</version>\n");
-		out.append("  <!-- This library pom was generated from ${JDEVHOME}/" + libPath.replaceAll("\\\\", "/") + "!META-INF/extension.xml -->\n");
-		out.append("  <!-- Extension ID: '" + lib.getExtensionId() + "' -->\n");
-		out.append("  <!-- Extension Version: '" + lib.getExtensionVersion() + "' -->\n");
-		out.append("  <name>" + lib.getName() + "</name>\n");
-		out.append("  <dependencies>\n");
+		out.comment("  <!-- JDeveloper library name: '", lib.getName(), "' -->\n");
+		out.comment("  <!-- Deployed by default: ", deployedByDefault, "-->\n");
+		out.element("  ", "packaging", lib.getPackaging());
+		out.element("  ", "version", lib.getVersion());
+		out.comment("  <!-- This library pom was generated from ${JDEVHOME}/", libPath.replace('\\', '/'), "!META-INF/extension.xml -->\n");
+		out.comment("  <!-- Extension ID: '", lib.getExtensionId(), "' -->\n");
+		out.comment("  <!-- Extension Version: '", lib.getExtensionVersion(), "' -->\n");
+		out.element("  ", "name", lib.getName());
+		out.markup("  <dependencies>\n");
 	}
 
-	private void writeJarDep(JarLibrary lib, JarDef jar, FileWriter out) throws IOException {
-		boolean exists = false;
-		if (new File(jar.getFilename()).exists()) {
-			exists = true;
-		}
-		if (exists) {
-			out.append("    <dependency>\n");
+	private void writeJarDep(JarLibrary lib, JarDef jar, XmlWriter out) throws IOException {
+		if (jar.exists()) {
+			out.markup("    <dependency>\n");
 			if (jar.getType() == JarDef.MANIFEST) {
-				out.append("      <!-- This dependency is from a MANIFEST classpath reference -->\n");
+				out.markup("      <!-- This dependency is from a MANIFEST classpath reference -->\n");
+			}
+			out.element("      ", "groupId", jar.getGroupId());
+			out.element("      ", "artifactId", jar.getArtifactId());
+			out.element("      ", "version", lib.getVersion());
+			if (pomDigests) {
+				writeDigests(jar, out);
 			}
-			out.append("      <groupId>" + jar.getGroupId() + "</groupId>\n");
-			out.append("      <artifactId>" + jar.getArtifactId() + "</artifactId>\n");
-			out.append("      <version>" + lib.getVersion() + "</version>\n");
-
-                        /* https://code.google.com/p/maven-adf/
-                        try {
-                                String jdevHomePath = new File(props.get(JDEVHOME) + "/..").getCanonicalPath();
-                                
-                                String filePath = "${JDEVHOME}/../" + jarFile.getAbsolutePath().substring(jdevHomePath.length()+1);
-                                
-                                out.append("      <!-- File from: '" + filePath + "' -->\n");
-                        } catch (Throwable t) {
-                                System.err.println("Error generating file location for: " + jarFile.getAbsolutePath());
-                        }
-                        FileInputStream fis = null;
-                        try {
-                                fis = new FileInputStream(jarFile);
-                                String md5 = DigestUtils.md5Hex(fis);
-                                out.append("      <!-- MD5='" + md5 + "' -->\n");
-                                fis.close();
-                                fis = new FileInputStream(jarFile);
-                                String sha1 = DigestUtils.sha1Hex(fis);
-                                out.append("      <!-- SHA1='" + sha1 + "' -->\n");
-                                
-                                
-                                
-                        } finally {
-                                if (fis != null) {
-                                        try { fis.close(); } catch (IOException e) {}
-                                }
-                        }
-						*/
 			writeManifestAttributes(jar, out);
 
-			out.append("    </dependency>\n");
+			out.markup("    </dependency>\n");
 		} else {
-			if (verbose) {
+			if (context.isVerbose()) {
 				System.err.println("Jar not found for library " + lib.getName() + ": " + jar.getFilename());
 			}
+			out.comment("    <!-- No jar file found, but dependency was found for ", jar.getArtifactId(), " -->\n");
 			if (jar.getType() == JarDef.MANIFEST) {
-				out.append("    <!-- No jar file found, but dependency was found for " + jar.getArtifactId() + " -->\n");
-				out.append("    <!--   This dependency is from a MANIFEST classpath reference -->\n");
-			} else {
-				out.append("    <!-- No jar file found, but dependency was found for " + jar.getArtifactId() + " -->\n");
+				out.markup("    <!--   This dependency is from a MANIFEST classpath reference -->\n");
 			}
-			out.append("    <!--\n");
-			out.append("    <dependency>\n");
-			out.append("      <groupId>" + jar.getGroupId() + "</groupId>\n");
-			out.append("      <artifactId>" + jar.getArtifactId() + "</artifactId>\n");
-			out.append("      <version>" + lib.getVersion() + "</version>\n");
-			out.append("    </dependency>\n");
-			out.append("    -->\n");
+			out.startComment("    <!--\n");
+			out.markup("    <dependency>\n");
+			out.element("      ", "groupId", jar.getGroupId());
+			out.element("      ", "artifactId", jar.getArtifactId());
+			out.element("      ", "version", lib.getVersion());
+			out.markup("    </dependency>\n");
+			out.endComment("    -->\n");
+		}
+	}
+
+	private void writeDigests(JarDef jar, XmlWriter out) throws IOException {
+		FileDigest digest;
+		try {
+			digest = context.getDigest(new File(jar.getFilename()));
+		} catch (IOException e) {
+			System.err.println("Cannot compute the hashes of " + jar.getFilename() + ": " + e.getMessage());
+			return;
 		}
+		out.markup("      <!-- MD5='" + digest.getMd5() + "' -->\n");
+		out.markup("      <!-- SHA1='" + digest.getSha1() + "' -->\n");
+		out.markup("      <!-- SHA256='" + digest.getSha256() + "' -->\n");
 	}
 
-	private void writeManifestAttributes(JarDef jar, FileWriter out) throws IOException {
+	private void writeManifestAttributes(JarDef jar, XmlWriter out) throws IOException {
 		Attributes manifestAttributes = jar.getManifestAttributes();
 
 		if (manifestAttributes != null) {
@@ -253,153 +377,374 @@ public class JarLoader {
 			});
 			sortedAttributes.addAll(manifestAttributes.keySet());
 
-			out.append("      <!-- Manifest Info: -->\n");
+			out.markup("      <!-- Manifest Info: -->\n");
 			for (Object key : sortedAttributes) {
 				String value = manifestAttributes.get(key).toString();
 				if (key.toString() != null && value != null && !"".equals(value.trim())) {
-					out.append("      <!--   " + key.toString() + "=" + value + " -->\n");
+					out.comment("      <!--   ", key.toString() + "=" + value, " -->\n");
 				}
 			}
 		}
 	}
 
-	private void writePomEnd(JarLibrary lib, FileWriter out) throws IOException {
-		out.append("  </dependencies>\n");
-		out.append("</project>\n");
+	private void writePomEnd(JarLibrary lib, XmlWriter out) throws IOException {
+		out.markup("  </dependencies>\n");
+		out.markup("</project>\n");
+	}
+
+	private static void close(XmlWriter out) {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 
 	private File getPomDir() {
 		return new File(workFolder, "poms");
 	}
 
-	private List<JarLibrary> getJarLibs() {
-		if (libs == null) {
-			libs = new ArrayList<JarLibrary>();
+	/**
+	 * @return the jars of the library whose filename is not yet in the given
+	 *         set, which they are added to
+	 */
+	private static List<JarDef> getNewJars(JarLibrary lib, Set<String> filenames) {
+		List<JarDef> newJars = new ArrayList<JarDef>();
+		for (JarDef jar : lib.getJars()) {
+			if (filenames.add(jar.getFilename())) {
+				newJars.add(jar);
+			}
 		}
-		return libs;
+		return newJars;
 	}
 
-	private void readLibraries(File folder) {
-		if (!folder.exists()) {
-			System.err.println("Directory does not exist: " + folder);
+	private void readLibraries(File folder, ScanListener listener) {
+		long start = System.nanoTime();
+		ScanCache cache = context.getCache();
+		if (cache != null) {
+			cache.load();
+		}
+		LibraryCollector collector = new LibraryCollector(listener);
+		if (scanThreads == 1) {
+			readExtensions(folder, collector);
 		} else {
-			File[] allFiles = folder.listFiles();
-			if (allFiles == null) {
-				throw new NullPointerException("Permissions problem accessing: " + folder.getAbsolutePath());
-			} else {
-				for (int i = 0; i < allFiles.length; i++) {
-					File file = allFiles[i];
-					if (file.isDirectory()) {
-						readLibraries(file);
-					} else {
-						if (file.getName().endsWith("jar")) {
-							if (verbose) {
-								System.out.println("Processing: " + file.getAbsolutePath());
-							}
-							getJDevExtensionXml(file);
+			readExtensionsParallel(folder, collector);
+		}
+		libs = collector.libraries;
+		if (listener == null) {
+			writeMavenLibraryPoms();
+		} else {
+			collector.finish();
+		}
+		if (cache != null) {
+			// after the POMs, to keep the hashes written to them
+			cache.save();
+		}
+		indexJars();
+		context.getMetrics().record("scan", start, 0, libs.size());
+	}
 
-						}
+	private void indexJars() {
+		jarIndex = new TreeMap<String, JarDef>();
+		for (JarLibrary lib : libs) {
+			for (JarDef jar : lib.getJars()) {
+				if (!jarIndex.containsKey(jar.getFilename())) {
+					jarIndex.put(jar.getFilename(), jar);
+				}
+			}
+		}
+		jars = Collections.unmodifiableSet(new LinkedHashSet<JarDef>(jarIndex.values()));
+	}
+
+	private void readExtensions(File folder, LibraryCollector collector) {
+		ScanCache.FolderListing listing = listFolder(folder);
+		if (listing != null) {
+			for (int i = 0; i < listing.size(); i++) {
+				File file = listing.getFile(folder, i);
+				if (listing.isFolder(i)) {
+					readExtensions(file, collector);
+				} else {
+					JarExtension extension = readExtension(file);
+					if (extension != null) {
+						collector.add(extension);
 					}
 				}
 			}
 		}
 	}
 
-	private void getJDevExtensionXml(File file) {
-		JarFile jarfile = null;
-		setCurrentFile(file);
+	/*
+	 * Every folder and jar becomes a task on a fixed pool. A folder task only
+	 * lists its content and submits new tasks, it never waits for them, so the
+	 * pool cannot dead-lock. The calling thread then walks the resulting tree
+	 * of futures in listing order, which yields the extensions in exactly the
+	 * same order as the serial scan, each as soon as it and all extensions
+	 * before it are read.
+	 */
+	private void readExtensionsParallel(File folder, LibraryCollector collector) {
+		ExecutorService executor = Executors.newFixedThreadPool(scanThreads);
 		try {
-			jarfile = new JarFile(file);
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			System.err.println("Not really a jar: " + file.getName());
-			System.err.println(e.getMessage());
-			return;
+			collectExtensions(executor.submit(new FolderTask(executor, folder)), collector);
+		} finally {
+			executor.shutdownNow();
 		}
-		JarEntry jarEntry = jarfile.getJarEntry("META-INF/extension.xml");
-		if (jarEntry == null) {
-			if (verbose) {
-				System.out.println("No extension.xml found for: " + file.getAbsolutePath());
-			}
-		} else {
-			InputStream is;
-			try {
-				setId(null);
-				setVersion(null);
-				is = jarfile.getInputStream(jarEntry);
-				Digester digester = new Digester();
-				addRules(digester);
-				digester.push(this);
-				digester.parse(is);
-				is.close();
-			} catch (IOException e1) {
-				e1.printStackTrace();
-			} catch (SAXException e) {
-				e.printStackTrace();
+	}
+
+	private void collectExtensions(Future<ScanNode> future, LibraryCollector collector) {
+		ScanNode node;
+		try {
+			node = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while scanning " + context.getJdevHome(), e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
 			}
+			throw new IllegalStateException(e.getCause());
+		}
+		if (node.extension != null) {
+			collector.add(node.extension);
+		}
+		for (Future<ScanNode> child : node.children) {
+			collectExtensions(child, collector);
 		}
-		return;
 	}
 
-	/*
-	 * <extension id="oracle.adf.share.dt" version="11.1.1.5.37.60.13"
-	 * esdk-version="1.0" rsbundle-class="oracle.adf.share.dt.res.Bundle"
-	 * xmlns="http://jcp.org/jsr/198/extension-manifest"> ... <library
-	 * name="JPS Designtime">
-	 * <classpath>../../../oracle_common/modules/oracle.jps_11
-	 * .1.1/jps-ee.jar</classpath> </library> ...
+	/**
+	 * @return the sub folders and jars of the folder, in listing order
 	 */
+	private ScanCache.FolderListing listFolder(File folder) {
+		ScanCache cache = context.getCache();
+		if (cache != null) {
+			ScanCache.FolderListing listing = cache.getFolder(folder);
+			if (listing != null) {
+				return listing;
+			}
+		}
+		if (!folder.exists()) {
+			System.err.println("Directory does not exist: " + folder);
+			return null;
+		}
+		long lastModified = folder.lastModified();
+		File[] allFiles = folder.listFiles();
+		if (allFiles == null) {
+			throw new NullPointerException("Permissions problem accessing: " + folder.getAbsolutePath());
+		}
+		List<String> names = new ArrayList<String>(allFiles.length);
+		boolean[] folders = new boolean[allFiles.length];
+		for (int i = 0; i < allFiles.length; i++) {
+			File file = allFiles[i];
+			if (file.isDirectory()) {
+				folders[names.size()] = true;
+				names.add(file.getName());
+			} else if (file.getName().endsWith("jar")) {
+				names.add(file.getName());
+			}
+		}
+		ScanCache.FolderListing listing = new ScanCache.FolderListing(lastModified, names.toArray(new String[names.size()]), folders);
+		if (cache != null) {
+			cache.putFolder(folder, listing);
+		}
+		return listing;
+	}
 
-	private void addRules(Digester d) {
-		// d.addBeanPropertySetter("extension/hooks/libraries");
-
-		d.addSetProperties("*/extension", "id", "id");
-		d.addSetProperties("*/extension", "version", "version");
-		d.addSetProperties("*/ex:extension", "id", "id");
-		d.addSetProperties("*/ex:extension", "version", "version");
-		d.addObjectCreate("*/libraries/library", JarLibrary.class);
-		d.addSetProperties("*/libraries/library");
-		d.addCallMethod("*/libraries/library/classpath", "addJarFile", 0);
-		d.addCallMethod("*/libraries/library/srcpath", "addSrcFile", 0);
-		d.addCallMethod("*/libraries/library/docpath", "addDocFile", 0);
-		d.addSetNext("*/libraries/library", "addLibrary");
+	/**
+	 * @return the extension of the jar with its libraries resolved, or
+	 *         <code>null</code> if the jar has no extension.xml
+	 */
+	private JarExtension readExtension(File file) {
+		if (context.isVerbose()) {
+			System.out.println("Processing: " + file.getAbsolutePath());
+		}
+		JarExtension extension;
+		ScanCache cache = context.getCache();
+		ScanCache.JarEntry entry = cache != null ? cache.getExtension(file) : null;
+		if (entry != null) {
+			extension = entry.getExtension();
+		} else {
+			try {
+				extension = getJDevExtensionXml(file);
+			} catch (IOException e) {
+				System.err.println("Not really a jar: " + file.getName());
+				System.err.println(e.getMessage());
+				return null;
+			}
+			if (cache != null) {
+				cache.putExtension(file, extension);
+			}
+		}
+		if (extension != null) {
+			for (LibraryDefinition definition : extension.getDefinitions()) {
+				extension.addLibrary(definition.createLibrary(context, file));
+			}
+		}
+		return extension;
+	}
 
+	private JarExtension getJDevExtensionXml(File file) throws IOException {
+		long start = System.nanoTime();
+		byte[] xml = context.getProbe().readEntry(file, "META-INF/extension.xml");
+		if (xml == null) {
+			if (context.isVerbose()) {
+				System.out.println("No extension.xml found for: " + file.getAbsolutePath());
+			}
+			return null;
+		}
+		JarExtension extension = EXTENSION_PARSER.parse(file, new ByteArrayInputStream(xml));
+		context.getMetrics().record("extension-xml", start, xml.length, 1);
+		return extension;
 	}
 
-	public void addLibrary(JarLibrary lib) {
-		getJarLibs().add(lib);
+	private void addLibrary(JarLibrary lib, JarExtension extension) {
 		lib.setGroupIdPrefix(groupIdPrefix);
 		lib.setPackaging(packagingType);
 		lib.setGroupId(GROUP_ID_SUFFIX);
 		lib.setVersion(adfVersion);
-		lib.setLibraryFile(getCurrentFile());
-		lib.setExtensionVersion(getVersion());
-		lib.setExtensionId(getId());
-		lib.setPomFile(writeMavenLibraryPom(lib));
+		lib.setExtensionVersion(extension.getVersion());
+		lib.setExtensionId(extension.getId());
+		try {
+			lib.computeCoordinates();
+		} catch (IOException e) {
+			System.err.println("Cannot compute the coordinates of " + lib.getName() + ": " + e.getMessage());
+		}
 	}
 
-	public void setId(String id) {
-		this.id = id;
-	}
+	/**
+	 * Receives the extensions of a scan in library order. When scanning for a
+	 * listener, the POM of every library is written and the library is passed
+	 * on right away, unless an earlier library has the same POM file name.
+	 * Such a library gets its POM in a numbered subfolder instead, so a POM
+	 * file is never rewritten while it may be deployed.
+	 */
+	private final class LibraryCollector {
+
+		private final ScanListener listener;
+		private final List<JarLibrary> libraries = new ArrayList<JarLibrary>();
+		private final Set<String> filenames = new HashSet<String>();
+		// keyed by the POM file, which is case insensitive where the file system is
+		private final Map<File, List<JarLibrary>> libsByPom = new HashMap<File, List<JarLibrary>>();
+		private final Map<JarLibrary, List<JarDef>> heldBack = new IdentityHashMap<JarLibrary, List<JarDef>>();
+
+		private LibraryCollector(ScanListener listener) {
+			this.listener = listener;
+			if (listener != null) {
+				getPomDir().mkdirs();
+			}
+		}
 
-	public String getId() {
-		return this.id;
-	}
+		private void add(JarExtension extension) {
+			for (JarLibrary lib : extension.getLibraries()) {
+				addLibrary(lib, extension);
+				libraries.add(lib);
+				if (listener != null) {
+					File key = getPomFile(lib);
+					List<JarLibrary> group = libsByPom.get(key);
+					if (group == null) {
+						group = new ArrayList<JarLibrary>(1);
+						libsByPom.put(key, group);
+					}
+					group.add(lib);
+					if (group.size() == 1) {
+						lib.setPomFile(writeMavenLibraryPom(lib, getPomDir()));
+						listener.libraryScanned(lib, getNewJars(lib, filenames));
+					} else {
+						File pomDir = new File(getPomDir(), String.valueOf(group.size() - 1));
+						pomDir.mkdirs();
+						lib.setPomFile(writeMavenLibraryPom(lib, pomDir));
+						heldBack.put(lib, getNewJars(lib, filenames));
+					}
+				}
+			}
+		}
+
+		/**
+		 * Passes the libraries that share their POM file name, all with the
+		 * POM of the last of them: the held back libraries with their jars,
+		 * the libraries passed before again without jars.
+		 */
+		private void finish() {
+			List<JarLibrary> colliding = new ArrayList<JarLibrary>();
+			for (JarLibrary lib : libraries) {
+				List<JarLibrary> group = libsByPom.get(getPomFile(lib));
+				if (group.size() > 1) {
+					lib.setPomFile(group.get(group.size() - 1).getPomFile());
+					colliding.add(lib);
+				}
+			}
+			if (colliding.isEmpty()) {
+				return;
+			}
+			listener.collidingLibrariesFollow();
+			for (JarLibrary lib : colliding) {
+				List<JarDef> jars = heldBack.get(lib);
+				listener.libraryScanned(lib, jars != null ? jars : Collections.<JarDef> emptyList());
+			}
+		}
 
-	public void setVersion(String version) {
-		this.version = version;
+		private File getPomFile(JarLibrary lib) {
+			return new File(getPomDir(), lib.getArtifactId() + ".pom");
+		}
 	}
 
-	public String getVersion() {
-		return this.version;
+	/**
+	 * A scanned folder or jar: the extension of a jar, if any, and the pending
+	 * results of a folder's entries in listing order.
+	 */
+	private static final class ScanNode {
+
+		private final JarExtension extension;
+		private final List<Future<ScanNode>> children;
+
+		private ScanNode(JarExtension extension, List<Future<ScanNode>> children) {
+			this.extension = extension;
+			this.children = children;
+		}
 	}
 
-	public static File getCurrentFile() {
-		return currentFile;
+	private final class FolderTask implements Callable<ScanNode> {
+
+		private final ExecutorService executor;
+		private final File folder;
+
+		private FolderTask(ExecutorService executor, File folder) {
+			this.executor = executor;
+			this.folder = folder;
+		}
+
+		@Override
+		public ScanNode call() {
+			List<Future<ScanNode>> children = new ArrayList<Future<ScanNode>>();
+			ScanCache.FolderListing listing = listFolder(folder);
+			if (listing != null) {
+				for (int i = 0; i < listing.size(); i++) {
+					File file = listing.getFile(folder, i);
+					if (listing.isFolder(i)) {
+						children.add(executor.submit(new FolderTask(executor, file)));
+					} else {
+						children.add(executor.submit(new JarTask(file)));
+					}
+				}
+			}
+			return new ScanNode(null, children);
+		}
 	}
 
-	public void setCurrentFile(File file) {
-		currentFile = file;
+	private final class JarTask implements Callable<ScanNode> {
+
+		private final File file;
+
+		private JarTask(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public ScanNode call() {
+			List<Future<ScanNode>> none = Collections.emptyList();
+			return new ScanNode(readExtension(file), none);
+		}
 	}
 
 }
@@ -0,0 +1,62 @@
+package com.googlecode.mavenadf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.jar.Attributes;
+
+/**
+ * The main manifest attributes of a jar and the jars on its Class-Path,
+ * resolved against the folder of the jar.
+ *
+ * @author Krisje
+ *
+ */
+class JarManifest {
+
+	private final Attributes attributes;
+	private final String classPath;
+	private final List<String> classPathJars;
+
+	/**
+	 * @param filename
+	 *            the canonical filename of the jar, with forward slashes
+	 */
+	JarManifest(String filename, Attributes attributes) {
+		this.attributes = attributes;
+		this.classPath = attributes.getValue("Class-Path");
+		List<String> jars = new ArrayList<String>();
+		if (classPath != null && !"".equals(classPath.trim())) {
+			StringTokenizer st = new StringTokenizer(classPath, " ");
+			String basePath = ".";
+			if (filename.lastIndexOf("/") >= 0) {
+				basePath = filename.substring(0, filename.lastIndexOf("/"));
+			}
+			while (st.hasMoreTokens()) {
+				String manifestjarfile = st.nextToken();
+				if (manifestjarfile.endsWith(".jar")) {
+					jars.add(basePath + "/" + manifestjarfile);
+				}
+			}
+		}
+		this.classPathJars = Collections.unmodifiableList(jars);
+	}
+
+	Attributes getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * @return the Class-Path attribute as written in the manifest, or
+	 *         <code>null</code>
+	 */
+	String getClassPath() {
+		return classPath;
+	}
+
+	List<String> getClassPathJars() {
+		return classPathJars;
+	}
+
+}
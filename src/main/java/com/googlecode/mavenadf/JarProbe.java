@@ -0,0 +1,247 @@
+package com.googlecode.mavenadf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Enumeration;
+import java.util.concurrent.Semaphore;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads a single entry from a jar without opening it as a
+ * {@link java.util.jar.JarFile}. Only the end of central directory record and
+ * the central directory are read to locate the entry, after which just that
+ * entry is inflated.
+ * <p>
+ * Every jar is closed before a read returns, and at most
+ * <code>maxOpenFiles</code> jars are open at the same time across all scan
+ * threads. Zip64 archives are delegated to {@link ZipFile}.
+ *
+ * @author Krisje
+ *
+ */
+class JarProbe {
+
+	static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+	private static final int END_HEADER = 0x06054b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int END_HEADER_SIZE = 22;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int MAX_COMMENT_SIZE = 0xffff;
+	private static final long ZIP64_MAGIC = 0xffffffffL;
+
+	private final Semaphore openFiles;
+
+	JarProbe(int maxOpenFiles) {
+		this.openFiles = new Semaphore(Math.max(1, maxOpenFiles), true);
+	}
+
+	/**
+	 * @return the content of the entry, or <code>null</code> if the jar does
+	 *         not contain it
+	 * @throws ZipException
+	 *             if the file is not a zip file
+	 */
+	byte[] readEntry(File jar, String name) throws IOException {
+		return read(jar, name, false);
+	}
+
+	/**
+	 * Like {@link java.util.jar.JarFile#getManifest()} the manifest name is
+	 * matched case insensitively if there is no exact match.
+	 *
+	 * @return the content of the manifest, or <code>null</code> if the jar has
+	 *         none
+	 */
+	byte[] readManifest(File jar) throws IOException {
+		return read(jar, MANIFEST_NAME, true);
+	}
+
+	private byte[] read(File jar, String name, boolean ignoreCase) throws IOException {
+		try {
+			openFiles.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting to open " + jar);
+		}
+		try {
+			RandomAccessFile file = new RandomAccessFile(jar, "r");
+			try {
+				return read(jar, file.getChannel(), name, ignoreCase);
+			} finally {
+				file.close();
+			}
+		} finally {
+			openFiles.release();
+		}
+	}
+
+	private byte[] read(File jar, FileChannel channel, String name, boolean ignoreCase) throws IOException {
+		long length = channel.size();
+		int tailLength = (int) Math.min(length, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+		ByteBuffer tail = readFully(channel, length - tailLength, tailLength);
+		int end = findEndHeader(tail);
+		if (end < 0) {
+			throw new ZipException("not a zip file: " + jar.getName());
+		}
+		int entries = tail.getShort(end + 10) & 0xffff;
+		long directorySize = tail.getInt(end + 12) & 0xffffffffL;
+		long directoryOffset = tail.getInt(end + 16) & 0xffffffffL;
+		if (entries == 0xffff || directorySize == ZIP64_MAGIC || directoryOffset == ZIP64_MAGIC) {
+			return readWithZipFile(jar, name, ignoreCase);
+		}
+		// bytes in front of the archive, e.g. a launcher script
+		long directoryPosition = length - tailLength + end - directorySize;
+		long base = directoryPosition - directoryOffset;
+		if (base < 0 || directorySize > Integer.MAX_VALUE) {
+			throw new ZipException("invalid central directory: " + jar.getName());
+		}
+
+		ByteBuffer directory = readFully(channel, directoryPosition, (int) directorySize);
+		byte[] target = name.getBytes("UTF-8");
+		int match = -1;
+		int position = 0;
+		while (position + CENTRAL_HEADER_SIZE <= directory.limit() && directory.getInt(position) == CENTRAL_HEADER) {
+			int nameLength = directory.getShort(position + 28) & 0xffff;
+			int extraLength = directory.getShort(position + 30) & 0xffff;
+			int commentLength = directory.getShort(position + 32) & 0xffff;
+			if (nameLength == target.length) {
+				if (equals(directory, position + CENTRAL_HEADER_SIZE, target, false)) {
+					match = position;
+					break;
+				}
+				if (ignoreCase && match < 0 && equals(directory, position + CENTRAL_HEADER_SIZE, target, true)) {
+					match = position;
+				}
+			}
+			position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+		if (match < 0) {
+			return null;
+		}
+
+		int method = directory.getShort(match + 10) & 0xffff;
+		long compressedSize = directory.getInt(match + 20) & 0xffffffffL;
+		long size = directory.getInt(match + 24) & 0xffffffffL;
+		long localOffset = directory.getInt(match + 42) & 0xffffffffL;
+		if (compressedSize == ZIP64_MAGIC || size == ZIP64_MAGIC || localOffset == ZIP64_MAGIC) {
+			return readWithZipFile(jar, name, ignoreCase);
+		}
+		ByteBuffer local = readFully(channel, base + localOffset, LOCAL_HEADER_SIZE);
+		if (local.getInt(0) != LOCAL_HEADER) {
+			throw new ZipException("invalid local header for " + name + " in " + jar.getName());
+		}
+		long dataPosition = base + localOffset + LOCAL_HEADER_SIZE + (local.getShort(26) & 0xffff) + (local.getShort(28) & 0xffff);
+		byte[] data = readFully(channel, dataPosition, (int) compressedSize).array();
+		if (method == ZipEntry.STORED) {
+			return data;
+		} else if (method == ZipEntry.DEFLATED) {
+			return inflate(data, (int) size, jar);
+		}
+		throw new ZipException("unsupported compression method " + method + " for " + name + " in " + jar.getName());
+	}
+
+	private static int findEndHeader(ByteBuffer tail) {
+		for (int i = tail.limit() - END_HEADER_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == END_HEADER && i + END_HEADER_SIZE + (tail.getShort(i + 20) & 0xffff) <= tail.limit()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean equals(ByteBuffer buffer, int offset, byte[] target, boolean ignoreCase) {
+		for (int i = 0; i < target.length; i++) {
+			byte b = buffer.get(offset + i);
+			if (b != target[i] && !(ignoreCase && Character.toUpperCase((char) b) == Character.toUpperCase((char) target[i]))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte[] inflate(byte[] data, int size, File jar) throws IOException {
+		Inflater inflater = new Inflater(true);
+		try {
+			// with nowrap the inflater may need one extra byte of input
+			byte[] input = new byte[data.length + 1];
+			System.arraycopy(data, 0, input, 0, data.length);
+			inflater.setInput(input);
+			byte[] output = new byte[size];
+			int length = 0;
+			while (length < size && !inflater.finished()) {
+				int inflated = inflater.inflate(output, length, size - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += inflated;
+			}
+			if (length != size) {
+				throw new ZipException("invalid entry size in " + jar.getName());
+			}
+			return output;
+		} catch (DataFormatException e) {
+			throw new ZipException("invalid compressed data in " + jar.getName() + ": " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new ZipException("unexpected end of file");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static byte[] readWithZipFile(File jar, String name, boolean ignoreCase) throws IOException {
+		ZipFile zipFile = new ZipFile(jar);
+		try {
+			ZipEntry entry = zipFile.getEntry(name);
+			if (entry == null && ignoreCase) {
+				for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+					ZipEntry candidate = entries.nextElement();
+					if (name.equalsIgnoreCase(candidate.getName())) {
+						entry = candidate;
+						break;
+					}
+				}
+			}
+			if (entry == null) {
+				return null;
+			}
+			InputStream in = zipFile.getInputStream(entry);
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+				}
+				return out.toByteArray();
+			} finally {
+				in.close();
+			}
+		} finally {
+			zipFile.close();
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.googlecode.mavenadf;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A library as declared in an extension.xml, before any of its paths are
+ * resolved against the file system. {@link #createLibrary(ScanContext, File)}
+ * turns it into a {@link JarLibrary}.
+ *
+ * @author Krisje
+ *
+ */
+public class LibraryDefinition implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String name;
+	private String deployed;
+	private String xmlns;
+	private List<Path> paths = new ArrayList<Path>();
+
+	public LibraryDefinition() {
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getDeployed() {
+		return deployed;
+	}
+
+	public void setDeployed(String deployed) {
+		this.deployed = deployed;
+	}
+
+	public String getXmlns() {
+		return xmlns;
+	}
+
+	public void setXmlns(String xmlns) {
+		this.xmlns = xmlns;
+	}
+
+	public void addJarFile(String path) {
+		paths.add(new Path(JarDef.JAR, path));
+	}
+
+	public void addSrcFile(String path) {
+		paths.add(new Path(JarDef.SRC, path));
+	}
+
+	public void addDocFile(String path) {
+		paths.add(new Path(JarDef.DOC, path));
+	}
+
+	/**
+	 * Resolves the library paths, in the order they were declared.
+	 */
+	JarLibrary createLibrary(ScanContext context, File libraryFile) {
+		JarLibrary lib = new JarLibrary(context, libraryFile);
+		if (name != null) {
+			lib.setName(name);
+		}
+		lib.setDeployed(deployed);
+		lib.setXmlns(xmlns);
+		for (Path path : paths) {
+			if (path.type == JarDef.JAR) {
+				lib.addJarFile(path.path);
+			} else if (path.type == JarDef.SRC) {
+				lib.addSrcFile(path.path);
+			} else {
+				lib.addDocFile(path.path);
+			}
+		}
+		return lib;
+	}
+
+	private static final class Path implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int type;
+		private final String path;
+
+		private Path(int type, String path) {
+			this.type = type;
+			this.path = path;
+		}
+	}
+
+}
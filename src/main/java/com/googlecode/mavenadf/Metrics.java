@@ -0,0 +1,98 @@
+package com.googlecode.mavenadf;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Time, bytes and item counts recorded per phase of a run, such as the scan,
+ * the parsing of extension.xml files or the deployment requests. Every
+ * recorded operation is kept, so latency percentiles can be reported.
+ * Thread-safe.
+ *
+ * @author Krisje
+ *
+ */
+public class Metrics {
+
+	private final Map<String, Timer> timers = new LinkedHashMap<String, Timer>();
+
+	/**
+	 * @return the timer of the phase, created on first use
+	 */
+	public synchronized Timer getTimer(String phase) {
+		Timer timer = timers.get(phase);
+		if (timer == null) {
+			timer = new Timer();
+			timers.put(phase, timer);
+		}
+		return timer;
+	}
+
+	/**
+	 * @return the timers by phase, in the order the phases were first used
+	 */
+	public synchronized Map<String, Timer> getTimers() {
+		return new LinkedHashMap<String, Timer>(timers);
+	}
+
+	/**
+	 * Records one operation of the phase that started at the given
+	 * {@link System#nanoTime()}.
+	 */
+	public void record(String phase, long startNanos, long bytes, long items) {
+		getTimer(phase).record(System.nanoTime() - startNanos, bytes, items);
+	}
+
+	public static class Timer {
+
+		private long count;
+		private long items;
+		private long bytes;
+		private long totalNanos;
+		private long[] samples = new long[16];
+
+		public synchronized void record(long nanos, long bytes, long items) {
+			if (count == samples.length) {
+				samples = Arrays.copyOf(samples, samples.length * 2);
+			}
+			samples[(int) count++] = nanos;
+			this.items += items;
+			this.bytes += bytes;
+			this.totalNanos += nanos;
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		public synchronized long getItems() {
+			return items;
+		}
+
+		public synchronized long getBytes() {
+			return bytes;
+		}
+
+		public synchronized long getTotalNanos() {
+			return totalNanos;
+		}
+
+		/**
+		 * @param percentile
+		 *            between 0 and 100
+		 * @return the duration of the operation at the given percentile
+		 *         (nearest rank), 0 if nothing was recorded
+		 */
+		public synchronized long getPercentileNanos(double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			long[] sorted = Arrays.copyOf(samples, (int) count);
+			Arrays.sort(sorted);
+			int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+			return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1];
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.googlecode.mavenadf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves the paths of library jars to canonical filenames. A path is looked
+ * up as is, relative to the JDeveloper home and relative to the Middleware
+ * home, in that order.
+ * <p>
+ * The same relative paths are referenced by many libraries, so every path is
+ * resolved once per scan and the result is reused, which saves the file
+ * system calls on slow (network) Middleware homes.
+ *
+ * @author Krisje
+ *
+ */
+class PathResolver {
+
+	private static final Resolution NOT_FOUND = new Resolution(false, null);
+
+	private final File jdevHome;
+	private final ConcurrentMap<String, Resolution> resolutions = new ConcurrentHashMap<String, Resolution>();
+
+	PathResolver(File jdevHome) {
+		this.jdevHome = jdevHome;
+	}
+
+	Resolution resolve(String path) {
+		Resolution resolution = resolutions.get(path);
+		if (resolution == null) {
+			resolution = lookup(path);
+			Resolution previous = resolutions.putIfAbsent(path, resolution);
+			if (previous != null) {
+				resolution = previous;
+			}
+		}
+		return resolution;
+	}
+
+	private Resolution lookup(String path) {
+		File file = new File(path);
+		if (!file.exists()) {
+			file = new File(jdevHome, path);
+		}
+		if (!file.exists()) {
+			file = new File(jdevHome, File.separator + ".." + File.separator + path);
+		}
+		if (!file.exists() || !file.isFile()) {
+			return NOT_FOUND;
+		}
+		try {
+			return new Resolution(true, file.getCanonicalPath().replace('\\', '/'));
+		} catch (IOException e) {
+			System.err.println("Cannot find canonical path of: " + file.getPath());
+			return new Resolution(true, null);
+		}
+	}
+
+	static final class Resolution {
+
+		private final boolean exists;
+		private final String filename;
+
+		private Resolution(boolean exists, String filename) {
+			this.exists = exists;
+			this.filename = filename;
+		}
+
+		/**
+		 * @return whether the path denotes an existing file
+		 */
+		boolean exists() {
+			return exists;
+		}
+
+		/**
+		 * @return the canonical filename with forward slashes, or
+		 *         <code>null</code> if the file does not exist or its
+		 *         canonical path cannot be determined
+		 */
+		String getFilename() {
+			return filename;
+		}
+	}
+
+}
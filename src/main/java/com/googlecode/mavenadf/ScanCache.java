@@ -0,0 +1,248 @@
+package com.googlecode.mavenadf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+
+/**
+ * On-disk cache of everything a scan reads from the JDeveloper home: folder
+ * listings, the extension.xml of each jar, the main manifest attributes of
+ * each referenced jar and the hashes of the jars written to the library POMs.
+ * <p>
+ * Entries are keyed by canonical path, so a JDeveloper home reached through
+ * a symbolic link or a relative path finds the same entries. Jar entries are
+ * only reused while the size and last modification time of the jar are
+ * unchanged. A folder listing is reused while the modification time of the
+ * folder is unchanged, which saves listing and typing the entries of
+ * unchanged folders. Since a jar can be rewritten in place without touching
+ * its folder, jars are still checked one by one.
+ * <p>
+ * Only the entries used by the current scan are written back, so entries of
+ * removed files disappear. A cache file that cannot be read is ignored.
+ *
+ * @author Krisje
+ *
+ */
+class ScanCache {
+
+	private static final int FORMAT = 2;
+
+	private final File file;
+	private Data previous = new Data();
+	private final Data current = new Data();
+
+	ScanCache(File file) {
+		this.file = file;
+	}
+
+	void load() {
+		if (!file.exists()) {
+			return;
+		}
+		ObjectInputStream in = null;
+		try {
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() == FORMAT) {
+				previous = (Data) in.readObject();
+			}
+		} catch (Exception e) {
+			System.err.println("Ignoring unreadable scan cache " + file + ": " + e.getMessage());
+		} finally {
+			close(in);
+		}
+	}
+
+	void save() {
+		file.getParentFile().mkdirs();
+		ObjectOutputStream out = null;
+		try {
+			out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(FORMAT);
+			out.writeObject(current);
+		} catch (IOException e) {
+			System.err.println("Cannot write scan cache " + file + ": " + e.getMessage());
+		} finally {
+			close(out);
+		}
+	}
+
+	/**
+	 * @return the cached listing of the folder, or <code>null</code> if the
+	 *         folder changed since it was cached
+	 */
+	FolderListing getFolder(File folder) {
+		String key = key(folder);
+		FolderListing listing = previous.folders.get(key);
+		if (listing != null && listing.lastModified == folder.lastModified()) {
+			current.folders.put(key, listing);
+			return listing;
+		}
+		return null;
+	}
+
+	void putFolder(File folder, FolderListing listing) {
+		current.folders.put(key(folder), listing);
+	}
+
+	/**
+	 * @return the cached extension of the jar, or <code>null</code> if the jar
+	 *         changed since it was cached
+	 */
+	JarEntry getExtension(File jar) {
+		return get(previous.extensions, current.extensions, jar);
+	}
+
+	void putExtension(File jar, JarExtension extension) {
+		current.extensions.put(key(jar), new JarEntry(jar, extension));
+	}
+
+	/**
+	 * @return the cached manifest of the jar, or <code>null</code> if the jar
+	 *         changed since it was cached
+	 */
+	JarEntry getManifest(File jar) {
+		return get(previous.manifests, current.manifests, jar);
+	}
+
+	void putManifest(File jar, Attributes attributes) {
+		LinkedHashMap<String, String> values = null;
+		if (attributes != null) {
+			values = new LinkedHashMap<String, String>();
+			for (Map.Entry<Object, Object> attribute : attributes.entrySet()) {
+				values.put(attribute.getKey().toString(), (String) attribute.getValue());
+			}
+		}
+		current.manifests.put(key(jar), new JarEntry(jar, values));
+	}
+
+	/**
+	 * @return the cached hashes of the file, or <code>null</code> if the file
+	 *         changed since they were cached
+	 */
+	FileDigest getDigest(File file) {
+		String key = key(file);
+		FileDigest digest = previous.digests.get(key);
+		if (digest != null && digest.matches(file)) {
+			current.digests.put(key, digest);
+			return digest;
+		}
+		return null;
+	}
+
+	void putDigest(File file, FileDigest digest) {
+		current.digests.put(key(file), digest);
+	}
+
+	private static JarEntry get(Map<String, JarEntry> previous, Map<String, JarEntry> current, File jar) {
+		String key = key(jar);
+		JarEntry entry = previous.get(key);
+		if (entry != null && entry.length == jar.length() && entry.lastModified == jar.lastModified()) {
+			current.put(key, entry);
+			return entry;
+		}
+		return null;
+	}
+
+	private static String key(File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	private static void close(java.io.Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	private static final class Data implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Map<String, FolderListing> folders = new ConcurrentHashMap<String, FolderListing>();
+		private final Map<String, JarEntry> extensions = new ConcurrentHashMap<String, JarEntry>();
+		private final Map<String, JarEntry> manifests = new ConcurrentHashMap<String, JarEntry>();
+		private final Map<String, FileDigest> digests = new ConcurrentHashMap<String, FileDigest>();
+	}
+
+	/**
+	 * The sub folders and jars of a folder, in listing order.
+	 */
+	static final class FolderListing implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long lastModified;
+		private final String[] names;
+		private final boolean[] folders;
+
+		FolderListing(long lastModified, String[] names, boolean[] folders) {
+			this.lastModified = lastModified;
+			this.names = names;
+			this.folders = folders;
+		}
+
+		int size() {
+			return names.length;
+		}
+
+		File getFile(File folder, int index) {
+			return new File(folder, names[index]);
+		}
+
+		boolean isFolder(int index) {
+			return folders[index];
+		}
+	}
+
+	/**
+	 * What was read from a jar: its extension or its manifest attributes,
+	 * <code>null</code> when the jar has none.
+	 */
+	static final class JarEntry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long length;
+		private final long lastModified;
+		private final Serializable value;
+
+		private JarEntry(File jar, Serializable value) {
+			this.length = jar.length();
+			this.lastModified = jar.lastModified();
+			this.value = value;
+		}
+
+		JarExtension getExtension() {
+			return (JarExtension) value;
+		}
+
+		Attributes getManifestAttributes() {
+			if (value == null) {
+				return null;
+			}
+			Attributes attributes = new Attributes();
+			for (Map.Entry<?, ?> attribute : ((Map<?, ?>) value).entrySet()) {
+				attributes.putValue((String) attribute.getKey(), (String) attribute.getValue());
+			}
+			return attributes;
+		}
+	}
+
+}
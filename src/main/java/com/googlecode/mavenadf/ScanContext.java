@@ -0,0 +1,258 @@
+package com.googlecode.mavenadf;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * Settings shared by every jar and library found during a single scan of a
+ * JDeveloper home. Replaces the former static state of {@link JarLoader} so
+ * that several jars can be inspected at the same time.
+ *
+ * @author Krisje
+ *
+ */
+class ScanContext {
+
+	static final int DEFAULT_MAX_OPEN_FILES = 64;
+
+	private final File jdevHome;
+	private final boolean verbose;
+	private final boolean useClasspathManifest;
+	private final ScanCache cache;
+	private final PathResolver pathResolver;
+	private final Metrics metrics = new Metrics();
+	private JarProbe probe = new JarProbe(DEFAULT_MAX_OPEN_FILES);
+	private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<String, String>();
+	private volatile String middlewareHome;
+	private final ConcurrentMap<String, FutureTask<JarManifest>> manifests = new ConcurrentHashMap<String, FutureTask<JarManifest>>();
+	private final ConcurrentMap<String, FutureTask<List<String>>> manifestClosures = new ConcurrentHashMap<String, FutureTask<List<String>>>();
+	private final ConcurrentMap<String, FutureTask<FileDigest>> digests = new ConcurrentHashMap<String, FutureTask<FileDigest>>();
+
+	/**
+	 * @param cache
+	 *            the cache of a previous scan, or <code>null</code> to read
+	 *            everything from the jars
+	 */
+	ScanContext(File jdevHome, boolean verbose, boolean useClasspathManifest, ScanCache cache) {
+		this.jdevHome = jdevHome;
+		this.verbose = verbose;
+		this.useClasspathManifest = useClasspathManifest;
+		this.cache = cache;
+		this.pathResolver = new PathResolver(jdevHome);
+	}
+
+	File getJdevHome() {
+		return jdevHome;
+	}
+
+	boolean isVerbose() {
+		return verbose;
+	}
+
+	boolean isUseClasspathManifest() {
+		return useClasspathManifest;
+	}
+
+	ScanCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * @return the canonical path of the Middleware home, the parent of the
+	 *         JDeveloper home, with forward slashes
+	 */
+	String getMiddlewareHome() throws IOException {
+		if (middlewareHome == null) {
+			middlewareHome = jdevHome.getParentFile().getCanonicalPath().replace('\\', '/');
+		}
+		return middlewareHome;
+	}
+
+	/**
+	 * @return a single instance for all equal strings of the scan, like the
+	 *         groupIds shared by many jars
+	 */
+	String intern(String value) {
+		String previous = strings.putIfAbsent(value, value);
+		return previous != null ? previous : value;
+	}
+
+	/**
+	 * Limits the number of jars open at the same time. Must be set before the
+	 * scan starts.
+	 */
+	void setMaxOpenFiles(int maxOpenFiles) {
+		this.probe = new JarProbe(maxOpenFiles);
+	}
+
+	PathResolver getPathResolver() {
+		return pathResolver;
+	}
+
+	JarProbe getProbe() {
+		return probe;
+	}
+
+	Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * The manifest of a jar, read once per scan no matter how many libraries
+	 * reference the jar.
+	 *
+	 * @param filename
+	 *            the resolved filename of a {@link JarDef}
+	 * @return the manifest, or <code>null</code> if the file does not exist or
+	 *         has no manifest
+	 */
+	JarManifest getManifest(final String filename) {
+		return memoize(manifests, filename, new Callable<JarManifest>() {
+
+			@Override
+			public JarManifest call() {
+				File file = new File(filename);
+				if (!file.exists() || !file.isFile()) {
+					return null;
+				}
+				try {
+					Attributes attributes = getManifestAttributes(file);
+					return attributes != null ? new JarManifest(filename, attributes) : null;
+				} catch (Throwable t) {
+					t.printStackTrace();
+					return null;
+				}
+			}
+		});
+	}
+
+	/**
+	 * The jar followed by every jar reachable through the Class-Path of the
+	 * manifests, depth first in Class-Path order and without duplicates. This
+	 * is the order in which a library that does not yet contain any of them
+	 * adds them.
+	 *
+	 * @param library
+	 *            used to resolve the Class-Path entries; manifest entries do
+	 *            not depend on the library they are resolved for
+	 */
+	List<String> getManifestClosure(final JarLibrary library, final String filename) {
+		return memoize(manifestClosures, filename, new Callable<List<String>>() {
+
+			@Override
+			public List<String> call() {
+				List<String> closure = new ArrayList<String>();
+				collectManifestClosure(library, filename, new HashSet<String>(), closure);
+				return Collections.unmodifiableList(closure);
+			}
+		});
+	}
+
+	/**
+	 * The hashes of a file, read at most once per scan and, with a scan cache,
+	 * only when the file changed since a previous scan. Used for the jars of
+	 * the library POMs as well as for every deployed file, which must not
+	 * change while the plugin runs.
+	 */
+	FileDigest getDigest(final File file) throws IOException {
+		try {
+			return memoize(digests, file.getAbsolutePath(), new Callable<FileDigest>() {
+
+				@Override
+				public FileDigest call() throws IOException {
+					FileDigest digest = cache != null ? cache.getDigest(file) : null;
+					if (digest == null) {
+						long start = System.nanoTime();
+						digest = FileDigest.compute(file);
+						metrics.record("digest", start, digest.getLength(), 1);
+						if (cache != null) {
+							cache.putDigest(file, digest);
+						}
+					}
+					return digest;
+				}
+			});
+		} catch (IllegalStateException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private void collectManifestClosure(JarLibrary library, String filename, Set<String> visited, List<String> closure) {
+		if (!visited.add(filename)) {
+			return;
+		}
+		closure.add(filename);
+		JarManifest manifest = getManifest(filename);
+		if (manifest != null) {
+			for (String path : manifest.getClassPathJars()) {
+				collectManifestClosure(library, new JarDef(library, path, JarDef.MANIFEST).getFilename(), visited, closure);
+			}
+		}
+	}
+
+	/**
+	 * Computes the value of a key at most once, also when several threads ask
+	 * for it at the same time.
+	 */
+	private static <T> T memoize(ConcurrentMap<String, FutureTask<T>> values, String key, Callable<T> callable) {
+		FutureTask<T> task = values.get(key);
+		if (task == null) {
+			FutureTask<T> created = new FutureTask<T>(callable);
+			task = values.putIfAbsent(key, created);
+			if (task == null) {
+				task = created;
+				created.run();
+			}
+		}
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading " + key, e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Cannot read " + key, e.getCause());
+		}
+	}
+
+	/**
+	 * @return the main attributes of the jar manifest, or <code>null</code> if
+	 *         the jar has no manifest
+	 */
+	Attributes getManifestAttributes(File jar) throws IOException {
+		long start = System.nanoTime();
+		if (cache != null) {
+			ScanCache.JarEntry entry = cache.getManifest(jar);
+			if (entry != null) {
+				metrics.record("manifest", start, 0, 1);
+				return entry.getManifestAttributes();
+			}
+		}
+		Attributes attributes = null;
+		byte[] manifest = probe.readManifest(jar);
+		if (manifest != null) {
+			attributes = new Manifest(new ByteArrayInputStream(manifest)).getMainAttributes();
+		}
+		metrics.record("manifest", start, manifest != null ? manifest.length : 0, 1);
+		if (cache != null) {
+			cache.putManifest(jar, attributes);
+		}
+		return attributes;
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.googlecode.mavenadf;
+
+import java.util.List;
+
+/**
+ * Receives the libraries of a scan one by one, as soon as each is ready, see
+ * {@link JarLoader#scan(ScanListener)}.
+ *
+ * @author Krisje
+ *
+ */
+public interface ScanListener {
+
+	/**
+	 * Called on the scanning thread, in library order.
+	 *
+	 * @param library
+	 *            the library, with its coordinates computed and its POM file
+	 *            written
+	 * @param jars
+	 *            the jars of the library that no earlier library used, as
+	 *            they will be returned by {@link JarLoader#getJars()}
+	 */
+	void libraryScanned(JarLibrary library, List<JarDef> jars);
+
+	/**
+	 * Called on the scanning thread at the end of the scan, when libraries
+	 * follow that share their POM file name with another library. Those are
+	 * passed after this call with the POM of the last of them, which replaces
+	 * what was passed for that name before.
+	 */
+	void collidingLibrariesFollow();
+
+}
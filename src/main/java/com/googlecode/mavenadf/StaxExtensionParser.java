@@ -0,0 +1,152 @@
+package com.googlecode.mavenadf;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming extension.xml parser. Reads the same elements as the original
+ * commons-digester rules, without building a rule set per jar
+ * or setting properties through reflection, and stops reading at the end of
+ * the &lt;libraries&gt; hook.
+ * <p>
+ * Element names are matched on their qualified name, like the non namespace
+ * aware Digester did. Instances are thread-safe.
+ *
+ * @author Krisje
+ *
+ */
+class StaxExtensionParser implements ExtensionParser {
+
+	private static final ThreadLocal<XMLInputFactory> FACTORY = new ThreadLocal<XMLInputFactory>() {
+
+		@Override
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+			factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+			return factory;
+		}
+	};
+
+	@Override
+	public JarExtension parse(File file, InputStream in) {
+		JarExtension extension = new JarExtension(file);
+		XMLStreamReader reader = null;
+		try {
+			reader = FACTORY.get().createXMLStreamReader(in);
+			List<String> path = new ArrayList<String>();
+			LibraryDefinition library = null;
+			StringBuilder text = null;
+			int textDepth = 0;
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = getName(reader.getPrefix(), reader.getLocalName());
+					path.add(name);
+					if ("extension".equals(name) || "ex:extension".equals(name)) {
+						readExtensionAttributes(reader, extension);
+					} else if (library == null && "library".equals(name) && isParent(path, "libraries")) {
+						library = new LibraryDefinition();
+						readLibraryAttributes(reader, library);
+					} else if (library != null && isParent(path, "library") && isPath(name)) {
+						text = new StringBuilder();
+						textDepth = path.size();
+					}
+				} else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+					if (text != null && path.size() == textDepth) {
+						text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					String name = path.remove(path.size() - 1);
+					if (text != null && path.size() < textDepth) {
+						addPath(library, name, text.toString().trim());
+						text = null;
+					} else if (text == null && library != null && "library".equals(name)) {
+						extension.addDefinition(library);
+						library = null;
+					} else if ("libraries".equals(name)) {
+						// nothing of interest after the library hooks
+						break;
+					}
+				}
+			}
+		} catch (XMLStreamException e) {
+			e.printStackTrace();
+		} finally {
+			close(reader);
+		}
+		return extension;
+	}
+
+	private void readExtensionAttributes(XMLStreamReader reader, JarExtension extension) {
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String name = getName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+			if ("id".equals(name)) {
+				extension.setId(reader.getAttributeValue(i));
+			} else if ("version".equals(name)) {
+				extension.setVersion(reader.getAttributeValue(i));
+			}
+		}
+	}
+
+	private void readLibraryAttributes(XMLStreamReader reader, LibraryDefinition library) {
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			String prefix = reader.getNamespacePrefix(i);
+			if (prefix == null || prefix.length() == 0) {
+				library.setXmlns(reader.getNamespaceURI(i));
+			}
+		}
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String name = getName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+			if ("name".equals(name)) {
+				library.setName(reader.getAttributeValue(i));
+			} else if ("deployed".equals(name)) {
+				library.setDeployed(reader.getAttributeValue(i));
+			}
+		}
+	}
+
+	private static boolean isPath(String name) {
+		return "classpath".equals(name) || "srcpath".equals(name) || "docpath".equals(name);
+	}
+
+	private static void addPath(LibraryDefinition library, String name, String path) {
+		if ("classpath".equals(name)) {
+			library.addJarFile(path);
+		} else if ("srcpath".equals(name)) {
+			library.addSrcFile(path);
+		} else {
+			library.addDocFile(path);
+		}
+	}
+
+	/**
+	 * @return whether the parent of the last element on the path has the
+	 *         given name
+	 */
+	private static boolean isParent(List<String> path, String name) {
+		return path.size() >= 2 && name.equals(path.get(path.size() - 2));
+	}
+
+	private static String getName(String prefix, String localName) {
+		return prefix == null || prefix.length() == 0 ? localName : prefix + ":" + localName;
+	}
+
+	private static void close(XMLStreamReader reader) {
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (XMLStreamException e) {
+				// ignore
+			}
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.googlecode.mavenadf;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Buffered writer for the generated XML files. Markup is written as is, text
+ * is escaped: inside a comment only "--" is broken up, elsewhere the XML
+ * special characters are replaced by entities. Values without special
+ * characters are written unchanged.
+ * <p>
+ * The files are written in UTF-8 whatever the platform encoding. They have no
+ * XML declaration, so Maven and any other XML reader take them as UTF-8; a
+ * non-ASCII library name written in the platform encoding, as before, made
+ * the POM unreadable on a platform that does not use UTF-8. ASCII content is
+ * written exactly as before.
+ *
+ * @author Krisje
+ *
+ */
+class XmlWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Writer out;
+	private boolean inComment;
+	private boolean endsWithDash;
+
+	XmlWriter(File file) throws IOException {
+		this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), BUFFER_SIZE);
+	}
+
+	/**
+	 * Writes markup without escaping.
+	 */
+	XmlWriter markup(String markup) throws IOException {
+		out.write(markup);
+		if (markup.length() > 0) {
+			endsWithDash = markup.charAt(markup.length() - 1) == '-';
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a value, escaped for the current context.
+	 */
+	XmlWriter text(Object value) throws IOException {
+		String text = String.valueOf(value);
+		if (inComment) {
+			writeCommentText(text);
+		} else {
+			writeElementText(text);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes an element with a text value on a line of its own.
+	 */
+	XmlWriter element(String indent, String name, Object value) throws IOException {
+		out.write(indent);
+		out.write('<');
+		out.write(name);
+		out.write('>');
+		text(value);
+		out.write("</");
+		out.write(name);
+		out.write(">\n");
+		endsWithDash = false;
+		return this;
+	}
+
+	/**
+	 * Writes the start of a comment; values are escaped for a comment until
+	 * {@link #endComment(String)}.
+	 */
+	XmlWriter startComment(String start) throws IOException {
+		out.write(start);
+		inComment = true;
+		endsWithDash = false;
+		return this;
+	}
+
+	XmlWriter endComment(String end) throws IOException {
+		if (endsWithDash && end.startsWith("-")) {
+			out.write(' ');
+		}
+		inComment = false;
+		out.write(end);
+		return this;
+	}
+
+	/**
+	 * Writes a whole comment: start, value and end.
+	 */
+	XmlWriter comment(String start, Object value, String end) throws IOException {
+		return startComment(start).text(value).endComment(end);
+	}
+
+	void close() throws IOException {
+		out.close();
+	}
+
+	private void writeElementText(String text) throws IOException {
+		int start = 0;
+		for (int i = 0; i < text.length(); i++) {
+			String entity;
+			switch (text.charAt(i)) {
+			case '&':
+				entity = "&amp;";
+				break;
+			case '<':
+				entity = "&lt;";
+				break;
+			case '>':
+				entity = "&gt;";
+				break;
+			default:
+				continue;
+			}
+			out.write(text, start, i - start);
+			out.write(entity);
+			start = i + 1;
+		}
+		out.write(text, start, text.length() - start);
+	}
+
+	private void writeCommentText(String text) throws IOException {
+		if (text.length() == 0) {
+			return;
+		}
+		int start = 0;
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) == '-' && (i == 0 ? endsWithDash : text.charAt(i - 1) == '-')) {
+				// "--" is not allowed in a comment
+				out.write(text, start, i - start);
+				out.write(' ');
+				start = i;
+			}
+		}
+		out.write(text, start, text.length() - start);
+		endsWithDash = text.charAt(text.length() - 1) == '-';
+	}
+
+}
@@ -0,0 +1,124 @@
+package be.mindworx.maven.plugin.adf;
+
+import junit.framework.TestCase;
+
+public class CircuitBreakerTest extends TestCase {
+
+	private static final long COOL_DOWN = 50;
+
+	public void testOpensAfterConsecutiveOverloads() {
+		CircuitBreaker breaker = new CircuitBreaker(3, COOL_DOWN, 4 * COOL_DOWN);
+		CircuitBreaker.Permit permit = breaker.acquire();
+		assertEquals(0, permit.getWait());
+		assertFalse(breaker.onFailure(permit, true));
+		assertFalse(breaker.onFailure(breaker.acquire(), true));
+		// a success resets the count
+		breaker.onSuccess(breaker.acquire());
+		assertFalse(breaker.onFailure(breaker.acquire(), true));
+		assertFalse(breaker.onFailure(breaker.acquire(), true));
+		// a failure that is no overload does not count
+		assertFalse(breaker.onFailure(breaker.acquire(), false));
+		assertEquals(0, breaker.getTrips());
+		assertTrue(breaker.onFailure(breaker.acquire(), true));
+		assertEquals(1, breaker.getTrips());
+
+		long wait = breaker.acquire().getWait();
+		assertTrue(String.valueOf(wait), wait > 0 && wait <= COOL_DOWN);
+		assertFalse(breaker.isBroken());
+	}
+
+	public void testNeverOpensWithoutThreshold() {
+		CircuitBreaker breaker = new CircuitBreaker(0, COOL_DOWN, COOL_DOWN);
+		for (int i = 0; i < 10; i++) {
+			assertFalse(breaker.onFailure(breaker.acquire(), true));
+		}
+		assertEquals(0, breaker.acquire().getWait());
+		assertEquals(0, breaker.getTrips());
+	}
+
+	public void testTrialSuccessCloses() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(1, COOL_DOWN, 4 * COOL_DOWN);
+		CircuitBreaker.Permit running = breaker.acquire();
+		assertTrue(breaker.onFailure(breaker.acquire(), true));
+
+		CircuitBreaker.Permit trial = awaitTrial(breaker);
+		// a single trial at a time
+		assertEquals(COOL_DOWN, breaker.acquire().getWait());
+		// a deployment started before the breaker opened does not close it
+		breaker.onSuccess(running);
+		assertTrue(breaker.acquire().getWait() > 0);
+
+		breaker.onSuccess(trial);
+		assertEquals(0, breaker.acquire().getWait());
+		assertEquals(COOL_DOWN, breaker.getCoolDownMillis());
+	}
+
+	public void testTrialFailureDoublesCoolDown() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(1, COOL_DOWN, 2 * COOL_DOWN);
+		CircuitBreaker.Permit running = breaker.acquire();
+		assertTrue(breaker.onFailure(breaker.acquire(), true));
+
+		CircuitBreaker.Permit trial = awaitTrial(breaker);
+		// a deployment started before the breaker opened does not decide the trial
+		assertFalse(breaker.onFailure(running, true));
+		assertEquals(COOL_DOWN, breaker.getCoolDownMillis());
+
+		assertFalse(breaker.onFailure(trial, true));
+		assertEquals(2 * COOL_DOWN, breaker.getCoolDownMillis());
+		assertFalse(breaker.isBroken());
+		long wait = breaker.acquire().getWait();
+		assertTrue(String.valueOf(wait), wait > COOL_DOWN && wait <= 2 * COOL_DOWN);
+
+		// at the maximum cool-down a failed trial breaks the circuit
+		assertFalse(breaker.onFailure(awaitTrial(breaker), true));
+		assertTrue(breaker.isBroken());
+		assertEquals(1, breaker.getTrips());
+	}
+
+	public void testReleasedTrialGoesToAnother() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(1, COOL_DOWN, 4 * COOL_DOWN);
+		assertTrue(breaker.onFailure(breaker.acquire(), true));
+
+		CircuitBreaker.Permit trial = awaitTrial(breaker);
+		CircuitBreaker.Permit waiting = breaker.acquire();
+		assertTrue(waiting.getWait() > 0);
+		// releasing a permit that is not the trial changes nothing
+		breaker.release(waiting);
+		assertTrue(breaker.acquire().getWait() > 0);
+
+		breaker.release(trial);
+		CircuitBreaker.Permit next = breaker.acquire();
+		assertEquals(0, next.getWait());
+		assertNotSame(trial, next);
+		// the old trial can no longer close the breaker
+		breaker.onSuccess(trial);
+		assertTrue(breaker.acquire().getWait() > 0);
+		breaker.onSuccess(next);
+		assertEquals(0, breaker.acquire().getWait());
+	}
+
+	public void testFailureThatIsNoOverloadReleasesTrial() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(1, COOL_DOWN, 4 * COOL_DOWN);
+		assertTrue(breaker.onFailure(breaker.acquire(), true));
+
+		assertFalse(breaker.onFailure(awaitTrial(breaker), false));
+		assertEquals(COOL_DOWN, breaker.getCoolDownMillis());
+		assertEquals(0, breaker.acquire().getWait());
+	}
+
+	/**
+	 * Waits for the cool-down to pass and takes the trial.
+	 */
+	private static CircuitBreaker.Permit awaitTrial(CircuitBreaker breaker) throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			CircuitBreaker.Permit permit = breaker.acquire();
+			if (permit.getWait() == 0) {
+				return permit;
+			}
+			Thread.sleep(permit.getWait());
+		}
+		fail("No trial after the cool-down");
+		return null;
+	}
+
+}
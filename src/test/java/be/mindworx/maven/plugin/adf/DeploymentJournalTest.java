@@ -0,0 +1,177 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+import com.googlecode.mavenadf.JarLoader;
+
+public class DeploymentJournalTest extends TestCase {
+
+	private File folder;
+	private File journalFile;
+	private File jarPomFolder;
+	private Artifact jar;
+	private Artifact jarPom;
+	private Artifact libraryPom;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("journal", "");
+		folder.delete();
+		journalFile = new File(folder, "work/deploy-journal.txt");
+		jarPomFolder = new File(folder, "jar-poms");
+		jarPomFolder.mkdirs();
+		jar = artifact("jars", "core", "jar", write(new File(folder, "core.jar"), "jar content"));
+		jarPom = artifact("jars", "core", "pom", write(new File(jarPomFolder, "0123456789abcdef.pom"), "<project/>"));
+		libraryPom = artifact("library", "Core", "pom", write(new File(folder, "Core.pom"), "<project>core</project>"));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(folder);
+	}
+
+	public void testResumeUnfinishedRun() throws Exception {
+		DeploymentJournal journal = open(true);
+		assertFalse(journal.isResumed());
+		journal.recordDeployed(Arrays.asList(jar, jarPom));
+		// aborted before the library POM was deployed
+		journal.close();
+
+		journal = open(true);
+		try {
+			assertTrue(journal.isResumed());
+			assertEquals(2, journal.getResumedCount());
+			assertEquals(Arrays.asList(libraryPom), journal.getPending(Arrays.asList(jar, jarPom, libraryPom)));
+			assertEquals(2, journal.getSkippedCount());
+		} finally {
+			journal.close();
+		}
+	}
+
+	public void testResumeAfterResume() throws Exception {
+		DeploymentJournal journal = open(true);
+		journal.recordDeployed(Arrays.asList(jar));
+		journal.close();
+		journal = open(true);
+		journal.recordDeployed(Arrays.asList(jarPom));
+		journal.close();
+
+		journal = open(true);
+		try {
+			assertTrue(journal.isResumed());
+			assertEquals(Arrays.asList(libraryPom), journal.getPending(Arrays.asList(jar, jarPom, libraryPom)));
+		} finally {
+			journal.close();
+		}
+	}
+
+	public void testCompletedRunStartsFromScratch() throws Exception {
+		DeploymentJournal journal = open(true);
+		journal.recordDeployed(Arrays.asList(jar, jarPom, libraryPom));
+		journal.complete();
+		journal.close();
+
+		journal = open(true);
+		try {
+			assertFalse(journal.isResumed());
+			assertEquals(0, journal.getResumedCount());
+			assertEquals(3, journal.getPending(Arrays.asList(jar, jarPom, libraryPom)).size());
+		} finally {
+			journal.close();
+		}
+	}
+
+	public void testNoResume() throws Exception {
+		DeploymentJournal journal = open(true);
+		journal.recordDeployed(Arrays.asList(jar));
+		journal.close();
+
+		journal = open(false);
+		try {
+			assertFalse(journal.isResumed());
+			assertEquals(Arrays.asList(jar), journal.getPending(Arrays.asList(jar)));
+		} finally {
+			journal.close();
+		}
+	}
+
+	public void testChangedFileIsPending() throws Exception {
+		DeploymentJournal journal = open(true);
+		journal.recordDeployed(Arrays.asList(jar, libraryPom));
+		journal.close();
+		write(jar.getFile(), "a longer jar content");
+		write(libraryPom.getFile(), "<project>CORE</project>");
+
+		journal = open(true);
+		try {
+			List<Artifact> artifacts = Arrays.asList(jar, libraryPom);
+			assertEquals(artifacts, journal.getPending(artifacts));
+		} finally {
+			journal.close();
+		}
+	}
+
+	public void testLineCutOffIsIgnored() throws Exception {
+		DeploymentJournal journal = open(true);
+		journal.recordDeployed(Arrays.asList(jar));
+		journal.close();
+		OutputStream out = new FileOutputStream(journalFile, true);
+		try {
+			out.write(DeploymentLedger.getKey(libraryPom).getBytes("UTF-8"));
+			out.write("=2".getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+
+		journal = open(true);
+		try {
+			assertEquals(1, journal.getResumedCount());
+			assertEquals(Arrays.asList(libraryPom), journal.getPending(Arrays.asList(jar, libraryPom)));
+		} finally {
+			journal.close();
+		}
+	}
+
+	/**
+	 * Every run scans anew, and so hashes the files anew.
+	 */
+	private DeploymentJournal open(boolean resume) throws IOException {
+		FileDigests digests = new FileDigests(new JarLoader(folder, folder, "11.1.1.7", "com.oracle.adf", false, false, "pom"));
+		return new DeploymentJournal(journalFile, resume, digests, jarPomFolder);
+	}
+
+	private static Artifact artifact(String groupId, String artifactId, String extension, File file) {
+		return new DefaultArtifact("com.oracle.adf." + groupId, artifactId, extension, "11.1.1.7").setFile(file);
+	}
+
+	private static File write(File file, String content) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,110 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+import com.googlecode.mavenadf.JarLoader;
+
+public class DeploymentLedgerTest extends TestCase {
+
+	private File folder;
+	private File ledgerFile;
+	private FileDigests digests;
+	private Artifact jar;
+	private Artifact pom;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("ledger", "");
+		folder.delete();
+		folder.mkdirs();
+		ledgerFile = new File(folder, "ledger/repo.properties");
+		digests = new FileDigests(new JarLoader(folder, folder, "11.1.1.7", "com.oracle.adf", false, false, "pom"));
+		jar = artifact("jars", "core", "jar", write(new File(folder, "core.jar"), "jar content"));
+		pom = artifact("library", "Core", "pom", write(new File(folder, "Core.pom"), "<project/>"));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(folder);
+	}
+
+	public void testReopen() throws Exception {
+		DeploymentLedger ledger = new DeploymentLedger(ledgerFile, "http://repo.example.com", digests);
+		List<Artifact> artifacts = Arrays.asList(jar, pom);
+		assertEquals(artifacts, ledger.getChanged(artifacts));
+		ledger.recordDeployed(Arrays.asList(jar));
+		ledger.save();
+
+		ledger = new DeploymentLedger(ledgerFile, "http://repo.example.com", digests);
+		assertTrue(ledger.isDeployed(jar));
+		assertEquals(Arrays.asList(pom), ledger.getChanged(artifacts));
+		assertEquals(1, ledger.getUnchangedCount());
+	}
+
+	public void testNotSavedIsForgotten() throws Exception {
+		DeploymentLedger ledger = new DeploymentLedger(ledgerFile, "http://repo.example.com", digests);
+		ledger.recordDeployed(Arrays.asList(jar));
+		assertTrue(ledger.isDeployed(jar));
+
+		ledger = new DeploymentLedger(ledgerFile, "http://repo.example.com", digests);
+		assertFalse(ledger.isDeployed(jar));
+	}
+
+	public void testTouchedFileWithSameContent() throws Exception {
+		DeploymentLedger ledger = new DeploymentLedger(ledgerFile, "http://repo.example.com", digests);
+		ledger.recordDeployed(Arrays.asList(jar));
+		ledger.save();
+		assertTrue(jar.getFile().setLastModified(jar.getFile().lastModified() - 60000));
+
+		ledger = new DeploymentLedger(ledgerFile, "http://repo.example.com", digests);
+		assertTrue(ledger.isDeployed(jar));
+	}
+
+	public void testChangedFile() throws Exception {
+		DeploymentLedger ledger = new DeploymentLedger(ledgerFile, "http://repo.example.com", digests);
+		ledger.recordDeployed(Arrays.asList(jar, pom));
+		ledger.save();
+		write(jar.getFile(), "other content");
+		assertTrue(jar.getFile().setLastModified(jar.getFile().lastModified() - 60000));
+		write(pom.getFile(), "<project>changed</project>");
+
+		ledger = new DeploymentLedger(ledgerFile, "http://repo.example.com", digests);
+		assertFalse(ledger.isDeployed(jar));
+		assertFalse(ledger.isDeployed(pom));
+	}
+
+	private static Artifact artifact(String groupId, String artifactId, String extension, File file) {
+		return new DefaultArtifact("com.oracle.adf." + groupId, artifactId, extension, "11.1.1.7").setFile(file);
+	}
+
+	private static File write(File file, String content) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,136 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+import com.googlecode.mavenadf.JarLoader;
+
+public class RemoteChecksumsTest extends TestCase {
+
+	private File folder;
+	private File repositoryFolder;
+	private RemoteChecksums checksums;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("checksums", "");
+		folder.delete();
+		repositoryFolder = new File(folder, "repository");
+		repositoryFolder.mkdirs();
+		String url = repositoryFolder.toURI().toString();
+		RemoteRepository repository = new RemoteRepository("test", "default", url.substring(0, url.length() - 1));
+		FileDigests digests = new FileDigests(new JarLoader(folder, folder, "11.1.1.7", "com.oracle.adf", false, false, "pom"));
+		checksums = new RemoteChecksums(repository, new SystemStreamLog(), digests);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(folder);
+	}
+
+	public void testSupported() {
+		assertTrue(RemoteChecksums.isSupported(new RemoteRepository("test", "default", "file:///tmp/repository")));
+		assertTrue(RemoteChecksums.isSupported(new RemoteRepository("test", "default", "https://repo.example.com/releases")));
+		assertFalse(RemoteChecksums.isSupported(new RemoteRepository("test", "legacy", "https://repo.example.com/releases")));
+		assertFalse(RemoteChecksums.isSupported(new RemoteRepository("test", "default", "dav:https://repo.example.com/releases")));
+	}
+
+	public void testFileRepository() throws Exception {
+		Artifact unchanged = artifact("core", "jar", "core content");
+		remote(unchanged, sha1(unchanged.getFile()));
+		// upper case, followed by the file name
+		Artifact unchangedPom = artifact("core", "pom", "<project/>");
+		remote(unchangedPom, sha1(unchangedPom.getFile()).toUpperCase() + "  core-11.1.1.7.pom");
+		Artifact changed = artifact("util", "jar", "util content");
+		remote(changed, sha1(write(new File(folder, "old.jar"), "old util content")));
+		Artifact empty = artifact("util", "pom", "<project/>");
+		remote(empty, "");
+		Artifact missing = artifact("tools", "jar", "tools content");
+
+		List<Artifact> artifacts = Arrays.asList(unchanged, unchangedPom, changed, empty, missing);
+		checksums.prefetch(artifacts, 3);
+
+		assertTrue(checksums.isPresent(unchanged));
+		assertTrue(checksums.isPresent(changed));
+		assertFalse(checksums.isPresent(empty));
+		assertFalse(checksums.isPresent(missing));
+		assertTrue(checksums.isUnchanged(unchangedPom));
+		assertFalse(checksums.isUnchanged(changed));
+
+		assertEquals(Arrays.asList(changed, empty, missing), checksums.getChanged(artifacts));
+		assertEquals(2, checksums.getExistingCount());
+	}
+
+	public void testRepositoryUrlWithSlash() throws Exception {
+		RemoteRepository repository = new RemoteRepository("test", "default", repositoryFolder.toURI().toString());
+		assertTrue(repository.getUrl().endsWith("/"));
+		FileDigests digests = new FileDigests(new JarLoader(folder, folder, "11.1.1.7", "com.oracle.adf", false, false, "pom"));
+		RemoteChecksums checksums = new RemoteChecksums(repository, new SystemStreamLog(), digests);
+		Artifact artifact = artifact("core", "jar", "core content");
+		remote(artifact, sha1(artifact.getFile()));
+
+		checksums.prefetch(Arrays.asList(artifact), 1);
+		assertTrue(checksums.isUnchanged(artifact));
+	}
+
+	private Artifact artifact(String artifactId, String extension, String content) throws IOException {
+		File file = write(new File(folder, artifactId + "." + extension), content);
+		return new DefaultArtifact("com.oracle.adf.jars", artifactId, extension, "11.1.1.7").setFile(file);
+	}
+
+	private void remote(Artifact artifact, String checksum) throws IOException {
+		File folder = new File(repositoryFolder, "com/oracle/adf/jars/" + artifact.getArtifactId() + "/" + artifact.getVersion());
+		folder.mkdirs();
+		String name = artifact.getArtifactId() + "-" + artifact.getVersion() + "." + artifact.getExtension();
+		write(new File(folder, name), "remote content");
+		write(new File(folder, name + ".sha1"), checksum);
+	}
+
+	private static String sha1(File file) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		byte[] content = new byte[(int) file.length()];
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			in.readFully(content);
+		} finally {
+			in.close();
+		}
+		return String.format("%040x", new BigInteger(1, digest.digest(content)));
+	}
+
+	private static File write(File file, String content) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,74 @@
+package be.mindworx.maven.plugin.adf;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.authentication.AuthenticationException;
+import org.apache.maven.wagon.authorization.AuthorizationException;
+
+import be.mindworx.maven.plugin.adf.RetryPolicy.FailureClass;
+
+public class RetryPolicyTest extends TestCase {
+
+	public void testTimeout() {
+		assertEquals(FailureClass.TIMEOUT, RetryPolicy.classify(new SocketTimeoutException("Read timed out")));
+		assertEquals(FailureClass.TIMEOUT, RetryPolicy.classify(deployFailure(new SocketTimeoutException(null))));
+		assertEquals(FailureClass.TIMEOUT, RetryPolicy.classify(new IOException("Connect to repo.example.com timed out")));
+		assertEquals(FailureClass.TIMEOUT, RetryPolicy.classify(transferFailure("Return code is: 504, ReasonPhrase: Gateway Timeout.")));
+		assertEquals(FailureClass.TIMEOUT, RetryPolicy.classify(transferFailure("Status code 408")));
+	}
+
+	public void testUnauthorized() {
+		assertEquals(FailureClass.UNAUTHORIZED, RetryPolicy.classify(deployFailure(new AuthenticationException("bad credentials"))));
+		assertEquals(FailureClass.UNAUTHORIZED, RetryPolicy.classify(deployFailure(new AuthorizationException("access denied"))));
+		assertEquals(FailureClass.UNAUTHORIZED, RetryPolicy.classify(transferFailure("Return code is: 401, ReasonPhrase: Unauthorized.")));
+		assertEquals(FailureClass.UNAUTHORIZED, RetryPolicy.classify(transferFailure("Failed to transfer file. Return code is: 403")));
+	}
+
+	public void testServerError() {
+		assertEquals(FailureClass.SERVER_ERROR, RetryPolicy.classify(transferFailure("Return code is: 503, ReasonPhrase: Service Unavailable.")));
+		assertEquals(FailureClass.SERVER_ERROR, RetryPolicy.classify(transferFailure("status: 500")));
+	}
+
+	public void testClientError() {
+		assertEquals(FailureClass.CLIENT_ERROR, RetryPolicy.classify(transferFailure("Return code is: 400, ReasonPhrase: Bad Request.")));
+		assertEquals(FailureClass.CLIENT_ERROR, RetryPolicy.classify(transferFailure("Status 409")));
+	}
+
+	public void testOther() {
+		assertEquals(FailureClass.OTHER, RetryPolicy.classify(new SocketException("Connection reset")));
+		assertEquals(FailureClass.OTHER, RetryPolicy.classify(new IOException((String) null)));
+		// a number in a message is not a status
+		assertEquals(FailureClass.OTHER, RetryPolicy.classify(new IOException("Wrote 503 bytes of library-401.pom")));
+		assertEquals(FailureClass.OTHER, RetryPolicy.classify(transferFailure("Return code is: 5030")));
+	}
+
+	public void testFirstCauseWins() {
+		Exception failure = new IOException("Return code is: 409", new SocketTimeoutException("Read timed out"));
+		assertEquals(FailureClass.CLIENT_ERROR, RetryPolicy.classify(failure));
+	}
+
+	public void testRetryDelay() {
+		RetryPolicy policy = new RetryPolicy(3, 100, 150);
+		assertEquals(100, policy.getBackoff(1));
+		assertEquals(150, policy.getBackoff(2));
+		long delay = policy.getRetryDelay(FailureClass.SERVER_ERROR, 1);
+		assertTrue(String.valueOf(delay), delay >= 50 && delay <= 101);
+		assertEquals(-1, policy.getRetryDelay(FailureClass.SERVER_ERROR, 3));
+		assertEquals(-1, policy.getRetryDelay(FailureClass.UNAUTHORIZED, 1));
+		assertEquals(-1, policy.getRetryDelay(FailureClass.CLIENT_ERROR, 1));
+	}
+
+	private static Exception transferFailure(String message) {
+		return deployFailure(new TransferFailedException(message));
+	}
+
+	private static Exception deployFailure(Throwable cause) {
+		return new IllegalStateException("Failed to deploy artifacts: " + cause.getClass().getSimpleName(), cause);
+	}
+
+}
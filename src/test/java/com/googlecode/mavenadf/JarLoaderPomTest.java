@@ -0,0 +1,135 @@
+package com.googlecode.mavenadf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the library POMs and dependencyManagement.xml written for a small
+ * JDeveloper home with golden files. The names and manifest attributes of the
+ * home contain XML special characters and "--", which must come out escaped.
+ */
+public class JarLoaderPomTest extends TestCase {
+
+	private static final String EXTENSION_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<extension id=\"oracle.test--ext\" version=\"11.1.1.7\" xmlns=\"http://jcp.org/jsr/198/extension-manifest\">\n"
+			+ "  <name>Test</name>\n"
+			+ "  <hooks>\n"
+			+ "    <libraries>\n"
+			+ "      <library name=\"Test &lt;Core&gt; &amp; Tools -- beta\" deployed=\"not-\">\n"
+			+ "        <classpath>../../../oracle_common/modules/oracle.test_11.1.1/core.jar</classpath>\n"
+			+ "        <classpath>../../../oracle_common/modules/oracle.test_11.1.1/missing.jar</classpath>\n"
+			+ "      </library>\n"
+			+ "    </libraries>\n"
+			+ "  </hooks>\n"
+			+ "</extension>\n";
+
+	private File root;
+
+	@Override
+	protected void setUp() throws Exception {
+		root = File.createTempFile("jarloader", "");
+		root.delete();
+		File modules = new File(root, "oracle_common/modules/oracle.test_11.1.1");
+		modules.mkdirs();
+
+		Manifest core = manifest();
+		core.getMainAttributes().putValue("Implementation-Title", "core--impl <&>");
+		core.getMainAttributes().putValue("Implementation-Vendor", "Oracle -");
+		core.getMainAttributes().putValue("Class-Path", "util.jar");
+		writeJar(new File(modules, "core.jar"), core, null);
+		Manifest util = manifest();
+		util.getMainAttributes().putValue("Implementation-Title", "util");
+		writeJar(new File(modules, "util.jar"), util, null);
+
+		File extensions = new File(root, "jdeveloper/jdev/extensions");
+		extensions.mkdirs();
+		writeJar(new File(extensions, "oracle.test.jar"), manifest(), EXTENSION_XML);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(root);
+	}
+
+	public void testLibraryPom() throws Exception {
+		JarLoader loader = load();
+		assertEquals(1, loader.getLibraries().size());
+		JarLibrary lib = loader.getLibraries().get(0);
+		assertEquals(golden("library.pom"), read(lib.getPomFile()));
+	}
+
+	public void testDependencyManagement() throws Exception {
+		JarLoader loader = load();
+		assertEquals(golden("dependencyManagement.xml"), read(loader.writeMavenDependencyManagementFile()));
+	}
+
+	private JarLoader load() {
+		File workFolder = new File(root, "work");
+		workFolder.mkdirs();
+		return new JarLoader(workFolder, new File(root, "jdeveloper"), "11.1.1.7", "com.oracle.adf", false, true, "pom", 1);
+	}
+
+	private static Manifest manifest() {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		return manifest;
+	}
+
+	private static void writeJar(File file, Manifest manifest, String extensionXml) throws IOException {
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(file), manifest);
+		try {
+			if (extensionXml != null) {
+				out.putNextEntry(new ZipEntry("META-INF/extension.xml"));
+				out.write(extensionXml.getBytes("UTF-8"));
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private String golden(String name) throws IOException {
+		InputStream in = getClass().getResourceAsStream(name);
+		assertNotNull("Missing golden file " + name, in);
+		return read(in);
+	}
+
+	private static String read(File file) throws IOException {
+		return read(new FileInputStream(file));
+	}
+
+	private static String read(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				bytes.write(buffer, 0, read);
+			}
+			return bytes.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,230 @@
+package com.googlecode.mavenadf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+public class JarProbeTest extends TestCase {
+
+	private static final byte[] MANIFEST = "Manifest-Version: 1.0\r\nImplementation-Title: probe\r\n\r\n".getBytes();
+
+	private final JarProbe probe = new JarProbe(4);
+	private File folder;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("jarprobe", "");
+		folder.delete();
+		folder.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = folder.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		folder.delete();
+	}
+
+	public void testDeflatedManifest() throws Exception {
+		File jar = new File(folder, "deflated.jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			addEntry(out, "x/Foo.class", new byte[300], ZipEntry.DEFLATED);
+			addEntry(out, JarProbe.MANIFEST_NAME, MANIFEST, ZipEntry.DEFLATED);
+		} finally {
+			out.close();
+		}
+		assertManifest(jar);
+	}
+
+	public void testStoredManifest() throws Exception {
+		File jar = new File(folder, "stored.jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			addEntry(out, JarProbe.MANIFEST_NAME, MANIFEST, ZipEntry.STORED);
+			addEntry(out, "x/Foo.class", new byte[300], ZipEntry.STORED);
+		} finally {
+			out.close();
+		}
+		assertManifest(jar);
+	}
+
+	public void testZipComment() throws Exception {
+		File jar = new File(folder, "comment.jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			// a comment that itself looks like the start of an end header
+			out.setComment("PK\u0005\u0006 a comment that is not the end header");
+			addEntry(out, JarProbe.MANIFEST_NAME, MANIFEST, ZipEntry.DEFLATED);
+		} finally {
+			out.close();
+		}
+		assertManifest(jar);
+	}
+
+	public void testManifestNameCase() throws Exception {
+		File jar = new File(folder, "case.jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			addEntry(out, "meta-inf/manifest.mf", MANIFEST, ZipEntry.DEFLATED);
+		} finally {
+			out.close();
+		}
+		assertManifest(jar);
+		assertNull(probe.readEntry(jar, JarProbe.MANIFEST_NAME));
+	}
+
+	public void testMissingEntry() throws Exception {
+		File jar = new File(folder, "plain.jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			addEntry(out, "x/Foo.class", new byte[300], ZipEntry.DEFLATED);
+		} finally {
+			out.close();
+		}
+		assertNull(probe.readManifest(jar));
+		assertNull(probe.readEntry(jar, "META-INF/extension.xml"));
+	}
+
+	public void testPrefixedJar() throws Exception {
+		File zip = new File(folder, "plain.zip");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+		try {
+			addEntry(out, JarProbe.MANIFEST_NAME, MANIFEST, ZipEntry.DEFLATED);
+		} finally {
+			out.close();
+		}
+		// a launcher script in front of the archive, offsets stay relative to the archive
+		File jar = new File(folder, "prefixed.jar");
+		OutputStream prefixed = new FileOutputStream(jar);
+		try {
+			prefixed.write("#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes());
+			prefixed.write(readFile(zip));
+		} finally {
+			prefixed.close();
+		}
+		assertManifest(jar);
+	}
+
+	public void testZip64() throws Exception {
+		File jar = new File(folder, "zip64.jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			// more entries than fit the end header, so a Zip64 end header is written
+			for (int i = 0; i < 0x10000; i++) {
+				addEntry(out, "e/" + i, new byte[0], ZipEntry.STORED);
+			}
+			addEntry(out, JarProbe.MANIFEST_NAME, MANIFEST, ZipEntry.DEFLATED);
+		} finally {
+			out.close();
+		}
+		assertManifest(jar);
+		assertNull(probe.readEntry(jar, "META-INF/extension.xml"));
+	}
+
+	public void testNotAZip() throws Exception {
+		File jar = new File(folder, "broken.jar");
+		OutputStream out = new FileOutputStream(jar);
+		try {
+			out.write("notazip".getBytes());
+		} finally {
+			out.close();
+		}
+		assertZipException(jar);
+	}
+
+	public void testTruncatedJar() throws Exception {
+		File jar = new File(folder, "truncated.jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			addEntry(out, JarProbe.MANIFEST_NAME, MANIFEST, ZipEntry.DEFLATED);
+			addEntry(out, "x/Foo.class", new byte[3000], ZipEntry.STORED);
+		} finally {
+			out.close();
+		}
+		RandomAccessFile file = new RandomAccessFile(jar, "rw");
+		try {
+			file.setLength(file.length() / 2);
+		} finally {
+			file.close();
+		}
+		assertZipException(jar);
+	}
+
+	public void testCorruptLocalHeader() throws Exception {
+		File jar = new File(folder, "corrupt.jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			addEntry(out, JarProbe.MANIFEST_NAME, MANIFEST, ZipEntry.DEFLATED);
+		} finally {
+			out.close();
+		}
+		RandomAccessFile file = new RandomAccessFile(jar, "rw");
+		try {
+			file.write(new byte[] { 'X', 'X' });
+		} finally {
+			file.close();
+		}
+		assertZipException(jar);
+	}
+
+	private void assertManifest(File jar) throws IOException {
+		assertEquals(new String(MANIFEST, "UTF-8"), new String(probe.readManifest(jar), "UTF-8"));
+	}
+
+	private void assertZipException(File jar) throws IOException {
+		try {
+			probe.readManifest(jar);
+			fail("Expected a ZipException for " + jar.getName());
+		} catch (ZipException e) {
+			// expected
+		}
+	}
+
+	private static void addEntry(ZipOutputStream out, String name, byte[] content, int method) throws IOException {
+		ZipEntry entry = new ZipEntry(name);
+		entry.setMethod(method);
+		if (method == ZipEntry.STORED) {
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			entry.setSize(content.length);
+			entry.setCompressedSize(content.length);
+			entry.setCrc(crc.getValue());
+		}
+		out.putNextEntry(entry);
+		out.write(content);
+		out.closeEntry();
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		byte[] content = new byte[(int) file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int offset = 0;
+			while (offset < content.length) {
+				int read = in.read(content, offset, content.length - offset);
+				if (read < 0) {
+					throw new IOException("unexpected end of " + file);
+				}
+				offset += read;
+			}
+		} finally {
+			in.close();
+		}
+		return content;
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.googlecode.mavenadf;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * The expected values are what the original commons-digester rules read from
+ * the same fixtures.
+ */
+public class StaxExtensionParserTest extends TestCase {
+
+	private static final File JAR = new File("jdeveloper/jdev/extensions/test.jar");
+
+	public void testPlainExtension() throws Exception {
+		JarExtension extension = parse("extension-plain.xml");
+		assertEquals("oracle.adf.share.dt", extension.getId());
+		assertEquals("11.1.1.7.42.73.81", extension.getVersion());
+		assertSame(JAR, extension.getFile());
+
+		List<LibraryDefinition> definitions = extension.getDefinitions();
+		assertEquals(2, definitions.size());
+
+		LibraryDefinition jps = definitions.get(0);
+		assertEquals("JPS Designtime", jps.getName());
+		assertEquals("false", jps.getDeployed());
+		assertNull(jps.getXmlns());
+		assertPaths(jps, new String[] { "0 ../../../oracle_common/modules/oracle.jps_11.1.1/jps-ee.jar",
+				"0 ../../../oracle_common/modules/oracle.jps_11.1.1/jps-api.jar", "1 ../../src/jps-src.zip", "2 ../../doc/jps-doc.zip" });
+
+		LibraryDefinition share = definitions.get(1);
+		assertEquals("ADF Common & Share Runtime", share.getName());
+		assertNull(share.getDeployed());
+		assertPaths(share, new String[] { "0 ../../../oracle_common/modules/oracle.adf.share_11.1.1/adf-share-base.jar" });
+	}
+
+	public void testNamespacedExtension() throws Exception {
+		JarExtension extension = parse("extension-namespaced.xml");
+		assertEquals("oracle.jdeveloper.webcenter", extension.getId());
+		assertEquals("11.1.1.7.0", extension.getVersion());
+
+		List<LibraryDefinition> definitions = extension.getDefinitions();
+		assertEquals(1, definitions.size());
+
+		LibraryDefinition webcenter = definitions.get(0);
+		assertEquals("WebCenter Framework Runtime", webcenter.getName());
+		assertEquals("true", webcenter.getDeployed());
+		assertEquals("http://xmlns.oracle.com/jdeveloper/1013/jdev-libraries", webcenter.getXmlns());
+		assertPaths(webcenter, new String[] { "0 ../../../oracle_common/modules/oracle.webcenter.framework_11.1.1/webcenter-framework.jar",
+				"2 ../../doc/webcenter-doc.zip" });
+	}
+
+	public void testNotAnExtension() throws Exception {
+		JarExtension extension = parse(new ByteArrayInputStream("<project/>".getBytes("UTF-8")));
+		assertNull(extension.getId());
+		assertTrue(extension.getDefinitions().isEmpty());
+	}
+
+	private JarExtension parse(String fixture) throws Exception {
+		InputStream in = getClass().getResourceAsStream(fixture);
+		assertNotNull("Missing fixture " + fixture, in);
+		try {
+			return parse(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static JarExtension parse(InputStream in) {
+		return new StaxExtensionParser().parse(JAR, in);
+	}
+
+	/**
+	 * The paths of a definition are only visible once resolved; against a home
+	 * that does not exist they are kept as declared.
+	 */
+	private static void assertPaths(LibraryDefinition definition, String[] expected) {
+		ScanContext context = new ScanContext(new File("jdeveloper"), false, false, null);
+		List<JarDef> jars = definition.createLibrary(context, JAR).getJars();
+		assertEquals(expected.length, jars.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], jars.get(i).getType() + " " + jars.get(i).getFilename());
+		}
+	}
+
+}